@@ -39,7 +39,7 @@ public class ObsidianDestroyer extends JavaPlugin {
         LOG = getLogger();
 
         // Initialize managers
-        new ConfigManager(false);
+        new ConfigManager();
         new HookManager();
         new MaterialManager();
         new ChunkManager();
@@ -71,7 +71,7 @@ public class ObsidianDestroyer extends JavaPlugin {
     public void onDisable() {
         // Save persistent data
         if (ChunkManager.getInstance() != null) {
-            ChunkManager.getInstance().save();
+            ChunkManager.getInstance().shutdown();
         }
     }
 
@@ -3,13 +3,17 @@ package com.drtshock.obsidiandestroyer.commands;
 import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
 import com.drtshock.obsidiandestroyer.managers.ChunkManager;
 import com.drtshock.obsidiandestroyer.managers.ConfigManager;
-import com.drtshock.obsidiandestroyer.managers.HookManager;
+import com.drtshock.obsidiandestroyer.managers.DurabilityReset;
+import com.drtshock.obsidiandestroyer.managers.DurabilitySnapshot;
 import com.drtshock.obsidiandestroyer.managers.MaterialManager;
+import com.drtshock.obsidiandestroyer.managers.WorldPartition;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.IOException;
 import java.util.logging.Level;
 
 public class ODCommand implements CommandExecutor {
@@ -19,6 +23,10 @@ public class ODCommand implements CommandExecutor {
         if (args.length == 0) {
             showHelp(sender);
 
+        } else if (args[0].equalsIgnoreCase("reset")) {
+            // commands with optional arguments
+            resetDurability(sender, args);
+
         } else if (args.length == 1) {
             // commands with 0 arguments
             String command = args[0];
@@ -29,8 +37,11 @@ public class ODCommand implements CommandExecutor {
             } else if (command.equalsIgnoreCase("reloadDB") || command.equalsIgnoreCase("reloadDataBase")) {
                 reloadDurabilites(sender);
 
-            } else if (command.equalsIgnoreCase("reset")) {
-                resetDurability(sender);
+            } else if (command.equalsIgnoreCase("snapshot")) {
+                createSnapshot(sender);
+
+            } else if (command.equalsIgnoreCase("stats")) {
+                showStats(sender);
 
             } else if (command.equalsIgnoreCase("version")) {
                 sender.sendMessage(ChatColor.DARK_PURPLE + "ObsidianDestroyer version: " + ChatColor.GRAY + ObsidianDestroyer.getInstance().getDescription().getVersion());
@@ -50,7 +61,9 @@ public class ODCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.DARK_PURPLE + "/od version - " + ChatColor.LIGHT_PURPLE + "gives version and shows commands.");
         sender.sendMessage(ChatColor.DARK_PURPLE + "/od reload - " + ChatColor.LIGHT_PURPLE + "reloads the plugin's config file.");
         sender.sendMessage(ChatColor.DARK_PURPLE + "/od reloadDB - " + ChatColor.LIGHT_PURPLE + "reloads the durability database.");
-        sender.sendMessage(ChatColor.DARK_PURPLE + "/od reset - " + ChatColor.LIGHT_PURPLE + " reset all durability damage and timers.");
+        sender.sendMessage(ChatColor.DARK_PURPLE + "/od reset [world] [x z radius] - " + ChatColor.LIGHT_PURPLE + " reset durability damage and timers.");
+        sender.sendMessage(ChatColor.DARK_PURPLE + "/od snapshot - " + ChatColor.LIGHT_PURPLE + "backs up all durabilities into one file.");
+        sender.sendMessage(ChatColor.DARK_PURPLE + "/od stats - " + ChatColor.LIGHT_PURPLE + "shows durability storage statistics.");
         sender.sendMessage(ChatColor.GREEN + "" + ChatColor.STRIKETHROUGH + "                                                             ");
     }
 
@@ -64,9 +77,7 @@ public class ODCommand implements CommandExecutor {
     private void reloadPlugin(CommandSender sender) {
         long time = System.currentTimeMillis();
         try {
-            ConfigManager.getInstance().backup(false);
-            ConfigManager.getInstance().reload();
-            if (ConfigManager.getInstance().isLoaded()) {
+            if (ConfigManager.getInstance().reload()) {
                 MaterialManager.getInstance().load();
                 ChunkManager.getInstance().loadDisabledWorlds();
                 sender.sendMessage(ChatColor.GREEN + "Reloading ObsidianDestroyer config completed in " + (System.currentTimeMillis() - time) + " ms!");
@@ -75,16 +86,99 @@ public class ODCommand implements CommandExecutor {
         } catch (Exception e) {
             e.printStackTrace();
         }
-        new ConfigManager(true).backup(true);
-        new HookManager();
-        MaterialManager.getInstance().load();
-        ChunkManager.getInstance().loadDisabledWorlds();
-        ObsidianDestroyer.LOG.log(Level.SEVERE, "The config has encountered an error on load. Recovered a backup from memory...");
-        sender.sendMessage(ChatColor.RED + "Reloading ObsidianDestroyer config failed, restored from memory. See log file.  Completed in " + (System.currentTimeMillis() - time) + " ms!");
+        ObsidianDestroyer.LOG.log(Level.SEVERE, "The config has encountered an error on load. Kept the current config...");
+        sender.sendMessage(ChatColor.RED + "Reloading ObsidianDestroyer config failed, kept the current config. See log file.  Completed in " + (System.currentTimeMillis() - time) + " ms!");
+    }
+
+    private void showStats(CommandSender sender) {
+        ChunkManager chunkManager = ChunkManager.getInstance();
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Loaded chunks: " + ChatColor.GRAY + chunkManager.getLoadedChunkCount());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Tracked blocks: " + ChatColor.GRAY + chunkManager.getTrackedBlockCount());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Stored chunks: " + ChatColor.GRAY + chunkManager.getStoredChunkCount());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Stored blocks: " + ChatColor.GRAY + chunkManager.getStoredBlockCount());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Chunk writes: " + ChatColor.GRAY + chunkManager.getWritesQueued());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Chunk writes avoided: " + ChatColor.GRAY + chunkManager.getWritesAvoided());
+        sender.sendMessage(ChatColor.DARK_PURPLE + "Save progress: " + ChatColor.GRAY + (chunkManager.isSaveDone() ? "done" : chunkManager.getSavePercent() + "%"));
+        for (WorldPartition partition : chunkManager.getPartitions()) {
+            sender.sendMessage(ChatColor.DARK_PURPLE + " - " + partition.getWorldName() + ": " + ChatColor.GRAY + partition.getLoadedChunkCount() + " loaded, " + partition.getStoredChunkCount() + " stored chunks, " + partition.getWritesQueued() + " writes");
+        }
+    }
+
+    private void createSnapshot(final CommandSender sender) {
+        final long time = System.currentTimeMillis();
+        final DurabilitySnapshot[] snapshot = new DurabilitySnapshot[1];
+        try {
+            snapshot[0] = ChunkManager.getInstance().createSnapshot(new Runnable() {
+                @Override
+                public void run() {
+                    if (snapshot[0].isFailed()) {
+                        sender.sendMessage(ChatColor.RED + "Durability snapshot failed. See log file.");
+                    } else {
+                        sender.sendMessage(ChatColor.GREEN + "Wrote " + snapshot[0].getChunkCount() + " chunks into " + snapshot[0].getFile().getName() + " in " + (System.currentTimeMillis() - time) + " ms.");
+                    }
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            sender.sendMessage(ChatColor.RED + "Durability snapshot failed. See log file.");
+            return;
+        }
+        if (snapshot[0] == null) {
+            sender.sendMessage(ChatColor.RED + "A durability snapshot is still being written.");
+        } else {
+            sender.sendMessage(ChatColor.GREEN + "Captured durabilities in " + (System.currentTimeMillis() - time) + " ms, writing " + snapshot[0].getFile().getName() + "...");
+        }
     }
 
-    private void resetDurability(CommandSender sender) {
-        long time = ChunkManager.getInstance().resetAllDurabilities();
-        sender.sendMessage(ChatColor.GREEN + "Reset all Material durabilities in " + (System.currentTimeMillis() - time) + " ms.");
+    private void resetDurability(final CommandSender sender, String[] args) {
+        final long time = System.currentTimeMillis();
+        final DurabilityReset reset;
+        if (args.length == 1) {
+            reset = new DurabilityReset(null);
+        } else if (args.length == 2) {
+            reset = new DurabilityReset(args[1]);
+        } else if (args.length == 5) {
+            if (ObsidianDestroyer.getInstance().getServer().getWorld(args[1]) == null) {
+                sender.sendMessage(ChatColor.RED + "World " + args[1] + " is not loaded.");
+                return;
+            }
+            try {
+                reset = new DurabilityReset(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Math.max(0, Integer.parseInt(args[4])));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "Usage: /od reset [world] [x z radius]");
+                return;
+            }
+        } else {
+            sender.sendMessage(ChatColor.RED + "Usage: /od reset [world] [x z radius]");
+            return;
+        }
+        ChunkManager.getInstance().resetDurabilities(reset);
+        if (reset.isDone()) {
+            showResetDone(sender, reset, time);
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "Resetting durabilities in " + reset.describe() + ", " + reset.getChunkCount() + " stored chunks to go...");
+        new BukkitRunnable() {
+            private int percent = 0;
+
+            @Override
+            public void run() {
+                if (reset.isDone()) {
+                    cancel();
+                    showResetDone(sender, reset, time);
+                } else if (reset.getPercent() >= percent + 10) {
+                    percent = reset.getPercent();
+                    sender.sendMessage(ChatColor.DARK_PURPLE + "Reset progress: " + ChatColor.GRAY + percent + "%");
+                }
+            }
+        }.runTaskTimer(ObsidianDestroyer.getInstance(), 20L, 20L);
+    }
+
+    private void showResetDone(CommandSender sender, DurabilityReset reset, long time) {
+        if (reset.isFailed()) {
+            sender.sendMessage(ChatColor.RED + "Resetting durabilities in " + reset.describe() + " failed. See log file.");
+        } else {
+            sender.sendMessage(ChatColor.GREEN + "Reset " + reset.getRemovedBlocks() + " Material durabilities in " + reset.describe() + " in " + (System.currentTimeMillis() - time) + " ms.");
+        }
     }
 }
@@ -0,0 +1,128 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+/**
+ * Block positions packed into a single long, so hot paths can pass and compare positions without
+ * allocating locations. The x and z coordinates take 26 bits each and the y coordinate 12 bits,
+ * all signed. Positions carry no world; the world goes along as its interned id, see
+ * {@link com.drtshock.obsidiandestroyer.managers.ChunkManager#getWorldId(World)}.
+ */
+public final class BlockPos {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
+    private BlockPos() {
+    }
+
+    /**
+     * Packs block coordinates
+     *
+     * @param x the block x coordinate
+     * @param y the block y coordinate
+     * @param z the block z coordinate
+     * @return the packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    /**
+     * Packs the block coordinates of a location
+     *
+     * @param location the location
+     * @return the packed position of the block at the location
+     */
+    public static long of(Location location) {
+        return pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Packs the coordinates of a block
+     *
+     * @param block the block
+     * @return the packed position of the block
+     */
+    public static long of(Block block) {
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Gets the block x coordinate of a packed position
+     *
+     * @param pos the packed position
+     * @return the block x coordinate
+     */
+    public static int x(long pos) {
+        return (int) (pos >> X_SHIFT);
+    }
+
+    /**
+     * Gets the block y coordinate of a packed position
+     *
+     * @param pos the packed position
+     * @return the block y coordinate
+     */
+    public static int y(long pos) {
+        return (int) (pos << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    /**
+     * Gets the block z coordinate of a packed position
+     *
+     * @param pos the packed position
+     * @return the block z coordinate
+     */
+    public static int z(long pos) {
+        return (int) (pos << XZ_BITS >> X_SHIFT);
+    }
+
+    /**
+     * Gets the chunk x coordinate of a packed position
+     *
+     * @param pos the packed position
+     * @return the chunk x coordinate
+     */
+    public static int chunkX(long pos) {
+        return x(pos) >> 4;
+    }
+
+    /**
+     * Gets the chunk z coordinate of a packed position
+     *
+     * @param pos the packed position
+     * @return the chunk z coordinate
+     */
+    public static int chunkZ(long pos) {
+        return z(pos) >> 4;
+    }
+
+    /**
+     * Gets the block at a packed position
+     *
+     * @param world the world of the block
+     * @param pos   the packed position
+     * @return the block
+     */
+    public static Block toBlock(World world, long pos) {
+        return world.getBlockAt(x(pos), y(pos), z(pos));
+    }
+
+    /**
+     * Gets the location of the center of the block at a packed position
+     *
+     * @param world the world of the block
+     * @param pos   the packed position
+     * @return the location of the block center
+     */
+    public static Location toCenter(World world, long pos) {
+        return new Location(world, x(pos) + 0.5, y(pos) + 0.5, z(pos) + 0.5);
+    }
+}
@@ -0,0 +1,521 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import java.util.Arrays;
+
+/**
+ * Map from the representation of a block within its chunk to its durability and durability reset
+ * time, packed into one long. Keys and values are primitives, so tracking a block allocates
+ * nothing. Every operation holds the lock of the map, so each update is atomic.
+ *
+ * Blocks are kept in an open addressing hash table until a 16x16x16 section of the chunk has
+ * {@link #DENSE_THRESHOLD} of them. The section then switches to dense arrays indexed by the
+ * position within the section: the durability in a short and the reset time as an int offset from
+ * a base time of the section. Blocks whose values do not fit stay in the hash table. A dense
+ * section switches back once it has less than {@link #SPARSE_THRESHOLD} blocks.
+ *
+ * Representations are unique for every block of a chunk, so distinct blocks never share an entry.
+ */
+public class DurabilityMap {
+
+    /**
+     * Value returned for representations that are not in the map
+     */
+    public static final long ABSENT = -1L;
+    /**
+     * Highest durability that can be packed, higher durabilities are capped
+     */
+    public static final int MAX_DURABILITY = (1 << 20) - 1;
+    /**
+     * Amount of blocks in a section that switches it to dense arrays. A dense section takes 24 KB,
+     * as much as the table slots of this many blocks at the highest load factor, so switching
+     * never grows the map.
+     */
+    public static final int DENSE_THRESHOLD = 1536;
+    /**
+     * Amount of blocks in a dense section below which it switches back to the hash table
+     */
+    public static final int SPARSE_THRESHOLD = 384;
+
+    private static final int TIME_SHIFT = 20;
+    private static final long MAX_TIME = (1L << 43) - 1L;
+    // durabilities are stored plus one in the dense arrays, 0 marks a free position
+    private static final int MAX_DENSE_DURABILITY = 0xFFFF - 1;
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    // no block of a world is this far below the ground
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private long[] values;
+    private int sparseSize = 0;
+    private int mask;
+    private Section[] sections = new Section[0];
+    private int sectionBase = 0;
+    private int size = 0;
+
+    /**
+     * Creates an empty map
+     */
+    public DurabilityMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private DurabilityMap(DurabilityMap other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.sparseSize = other.sparseSize;
+        this.mask = other.mask;
+        this.sections = new Section[other.sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            if (other.sections[i] != null) {
+                sections[i] = new Section(other.sections[i]);
+            }
+        }
+        this.sectionBase = other.sectionBase;
+        this.size = other.size;
+    }
+
+    /**
+     * Packs a durability and a durability reset time into one value
+     *
+     * @param durability the durability, capped to {@link #MAX_DURABILITY}
+     * @param time       the reset time in milliseconds, or 0 if there is no timer
+     * @return the packed value
+     */
+    public static long pack(int durability, long time) {
+        final long amount = Math.max(0, Math.min(MAX_DURABILITY, durability));
+        return (Math.max(0L, Math.min(MAX_TIME, time)) << TIME_SHIFT) | amount;
+    }
+
+    /**
+     * Gets the durability of a packed value
+     *
+     * @param value the packed value
+     * @return the durability
+     */
+    public static int durability(long value) {
+        return (int) (value & MAX_DURABILITY);
+    }
+
+    /**
+     * Gets the durability reset time of a packed value
+     *
+     * @param value the packed value
+     * @return the reset time, or 0 if there is no timer
+     */
+    public static long time(long value) {
+        return value >>> TIME_SHIFT;
+    }
+
+    /**
+     * Gets the packed value of a representation
+     *
+     * @param representation the representation
+     * @return the packed value, or {@link #ABSENT} if the representation is not in the map
+     */
+    public synchronized long get(int representation) {
+        final Section section = section(representation >> 12, false);
+        if (section == null) {
+            return ABSENT;
+        }
+        if (section.durabilities != null) {
+            final long value = section.get(representation & (SECTION_SIZE - 1));
+            if (value != ABSENT || section.sparse == 0) {
+                return value;
+            }
+        }
+        return sparseGet(representation);
+    }
+
+    /**
+     * Checks if the map contains a representation
+     *
+     * @param representation the representation
+     * @return true if the representation is in the map
+     */
+    public boolean contains(int representation) {
+        return get(representation) != ABSENT;
+    }
+
+    /**
+     * Sets the packed value of a representation
+     *
+     * @param representation the representation
+     * @param value          the packed value, see {@link #pack(int, long)}
+     * @return the previous value, or {@link #ABSENT} if the representation was not in the map
+     */
+    public synchronized long put(int representation, long value) {
+        final int sectionY = representation >> 12;
+        final Section section = section(sectionY, true);
+        final long previous = remove(section, representation);
+        if (section.durabilities != null && section.put(representation & (SECTION_SIZE - 1), value)) {
+            section.dense++;
+        } else {
+            sparsePut(representation, value);
+            section.sparse++;
+            if (section.durabilities == null && section.sparse >= DENSE_THRESHOLD) {
+                toDense(section, sectionY);
+            }
+        }
+        size++;
+        return previous;
+    }
+
+    /**
+     * Removes a representation from the map
+     *
+     * @param representation the representation
+     * @return the removed value, or {@link #ABSENT} if the representation was not in the map
+     */
+    public synchronized long remove(int representation) {
+        final int sectionY = representation >> 12;
+        final Section section = section(sectionY, false);
+        if (section == null) {
+            return ABSENT;
+        }
+        final long previous = remove(section, representation);
+        if (section.durabilities != null && section.dense < SPARSE_THRESHOLD) {
+            toSparse(section, sectionY);
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the amount of entries in the map
+     *
+     * @return the size of the map
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map is empty
+     *
+     * @return true if there are no entries in the map
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all entries from the map
+     */
+    public synchronized void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(keys, EMPTY);
+        }
+        sparseSize = 0;
+        sections = new Section[0];
+        size = 0;
+    }
+
+    /**
+     * Copies the map
+     *
+     * @return a copy of the map as of now
+     */
+    public synchronized DurabilityMap copy() {
+        return new DurabilityMap(this);
+    }
+
+    /**
+     * Copies the representations of the map
+     *
+     * @return array with every representation of the map
+     */
+    public synchronized int[] keys() {
+        int[] copy = new int[size];
+        int i = 0;
+        for (int key : keys) {
+            if (key != EMPTY) {
+                copy[i++] = key;
+            }
+        }
+        for (int s = 0; s < sections.length; s++) {
+            final Section section = sections[s];
+            if (section == null || section.durabilities == null) {
+                continue;
+            }
+            final int sectionKey = (sectionBase + s) << 12;
+            for (int index = 0; index < SECTION_SIZE; index++) {
+                if (section.durabilities[index] != 0) {
+                    copy[i++] = sectionKey | index;
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the latest durability reset time of the map
+     *
+     * @return the latest reset time, or 0 if no entry has a timer
+     */
+    public synchronized long getMaxTime() {
+        long max = 0L;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                max = Math.max(max, time(values[i]));
+            }
+        }
+        for (Section section : sections) {
+            if (section == null || section.durabilities == null) {
+                continue;
+            }
+            for (int index = 0; index < SECTION_SIZE; index++) {
+                if (section.durabilities[index] != 0 && section.times[index] != 0) {
+                    max = Math.max(max, section.baseTime + section.times[index]);
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Removes a representation from its section or from the hash table, without switching the
+     * section back to the hash table
+     */
+    private long remove(Section section, int representation) {
+        if (section.durabilities != null) {
+            final long previous = section.remove(representation & (SECTION_SIZE - 1));
+            if (previous != ABSENT) {
+                section.dense--;
+                size--;
+                return previous;
+            }
+        }
+        if (section.sparse == 0) {
+            return ABSENT;
+        }
+        final long previous = sparseRemove(representation);
+        if (previous != ABSENT) {
+            section.sparse--;
+            size--;
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the section at a section y coordinate
+     *
+     * @param sectionY the section y coordinate
+     * @param create   set to true to create the section if there is none
+     * @return the section, or null if there is none and none was created
+     */
+    private Section section(int sectionY, boolean create) {
+        final int index = sectionY - sectionBase;
+        if (index >= 0 && index < sections.length) {
+            if (sections[index] == null && create) {
+                sections[index] = new Section();
+            }
+            return sections[index];
+        }
+        if (!create) {
+            return null;
+        }
+        if (sections.length == 0) {
+            sections = new Section[1];
+            sectionBase = sectionY;
+            return sections[0] = new Section();
+        }
+        final int base = Math.min(sectionBase, sectionY);
+        final int end = Math.max(sectionBase + sections.length, sectionY + 1);
+        Section[] grown = new Section[end - base];
+        System.arraycopy(sections, 0, grown, sectionBase - base, sections.length);
+        sections = grown;
+        sectionBase = base;
+        return sections[sectionY - base] = new Section();
+    }
+
+    /**
+     * Moves the blocks of a section from the hash table into dense arrays
+     */
+    private void toDense(Section section, int sectionY) {
+        int[] moved = new int[section.sparse];
+        int count = 0;
+        long minTime = 0L;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && keys[i] >> 12 == sectionY) {
+                final long time = time(values[i]);
+                if (time > 0L && (minTime == 0L || time < minTime)) {
+                    minTime = time;
+                }
+                moved[count++] = keys[i];
+            }
+        }
+        section.durabilities = new short[SECTION_SIZE];
+        section.times = new int[SECTION_SIZE];
+        section.baseTime = minTime == 0L ? 0L : minTime - 1L;
+        for (int i = 0; i < count; i++) {
+            if (section.put(moved[i] & (SECTION_SIZE - 1), sparseGet(moved[i]))) {
+                sparseRemove(moved[i]);
+                section.sparse--;
+                section.dense++;
+            }
+        }
+    }
+
+    /**
+     * Moves the blocks of a dense section back into the hash table
+     */
+    private void toSparse(Section section, int sectionY) {
+        final int sectionKey = sectionY << 12;
+        for (int index = 0; index < SECTION_SIZE; index++) {
+            final long value = section.get(index);
+            if (value != ABSENT) {
+                sparsePut(sectionKey | index, value);
+                section.sparse++;
+            }
+        }
+        section.durabilities = null;
+        section.times = null;
+        section.dense = 0;
+    }
+
+    private long sparseGet(int representation) {
+        int index = index(representation);
+        while (keys[index] != EMPTY) {
+            if (keys[index] == representation) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Adds a representation that is not in the hash table yet
+     */
+    private void sparsePut(int representation, long value) {
+        int index = index(representation);
+        while (keys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = representation;
+        values[index] = value;
+        sparseSize++;
+        if (sparseSize * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private long sparseRemove(int representation) {
+        int index = index(representation);
+        while (keys[index] != representation) {
+            if (keys[index] == EMPTY) {
+                return ABSENT;
+            }
+            index = (index + 1) & mask;
+        }
+        final long previous = values[index];
+        keys[index] = EMPTY;
+        sparseSize--;
+        // shift the following entries of the probe sequence back into the gap
+        int gap = index;
+        index = (index + 1) & mask;
+        while (keys[index] != EMPTY) {
+            final int home = index(keys[index]);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                keys[index] = EMPTY;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        return previous;
+    }
+
+    private int index(int key) {
+        final int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = index(oldKeys[i]);
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Blocks of one 16x16x16 section of the chunk
+     */
+    private static class Section {
+        // blocks of the section in the hash table
+        private int sparse = 0;
+        // blocks of the section in the dense arrays
+        private int dense = 0;
+        // durability plus one per position, or null while the section is sparse
+        private short[] durabilities;
+        // reset time minus the base time per position, 0 if there is no timer
+        private int[] times;
+        private long baseTime;
+
+        private Section() {
+        }
+
+        private Section(Section other) {
+            this.sparse = other.sparse;
+            this.dense = other.dense;
+            this.durabilities = other.durabilities == null ? null : other.durabilities.clone();
+            this.times = other.times == null ? null : other.times.clone();
+            this.baseTime = other.baseTime;
+        }
+
+        private long get(int index) {
+            final int durability = durabilities[index] & 0xFFFF;
+            if (durability == 0) {
+                return ABSENT;
+            }
+            return pack(durability - 1, times[index] == 0 ? 0L : baseTime + times[index]);
+        }
+
+        /**
+         * Stores a value at a free position, if it fits into the dense arrays
+         */
+        private boolean put(int index, long value) {
+            final int durability = durability(value);
+            final long time = time(value);
+            if (durability > MAX_DENSE_DURABILITY) {
+                return false;
+            }
+            if (time != 0L && baseTime == 0L) {
+                baseTime = time - 1L;
+            }
+            final long offset = time == 0L ? 0L : time - baseTime;
+            if (offset < 0L || offset > Integer.MAX_VALUE || (time != 0L && offset == 0L)) {
+                return false;
+            }
+            durabilities[index] = (short) (durability + 1);
+            times[index] = (int) offset;
+            return true;
+        }
+
+        private long remove(int index) {
+            final long previous = get(index);
+            durabilities[index] = 0;
+            times[index] = 0;
+            return previous;
+        }
+    }
+}
@@ -3,8 +3,15 @@ package com.drtshock.obsidiandestroyer.datatypes;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.util.List;
+
 public class DurabilityMaterial {
 
+    /**
+     * Damage of a source that is not enabled for the material, see {@link #getSourceDamage(int)}
+     */
+    public static final int DISABLED = -1;
+
     private Material type;
     private int dura;
     private int blastRadius;
@@ -12,21 +19,10 @@ public class DurabilityMaterial {
     private double chanceToDrop;
     private boolean resetEnabled;
     private long resetTime;
-    private boolean tntEnabled;
-    private boolean cannonsEnabled;
-    private boolean creepersEnabled;
-    private boolean ghastsEnabled;
-    private boolean withersEnabled;
-    private boolean tntMinecartsEnabled;
-    private int tntDamage;
-    private int cannonDamage;
-    private int creeperDamage;
-    private int chargedCreeperDamage;
-    private int ghastDamage;
-    private int witherDamage;
-    private int tntMinecartDamage;
     private double fluidDamper;
     private boolean destructible;
+    private List<ExplosionSource> sources;
+    private int[] sourceDamage;
 
     /**
      * Storage for a tracked material from the config
@@ -35,6 +31,17 @@ public class DurabilityMaterial {
      * @param section the configuration section to load
      */
     public DurabilityMaterial(Material type, ConfigurationSection section) {
+        this(type, section, ExplosionSource.defaults());
+    }
+
+    /**
+     * Storage for a tracked material from the config
+     *
+     * @param type    the type of material
+     * @param section the configuration section to load
+     * @param sources the explosion sources to read the damage of
+     */
+    public DurabilityMaterial(Material type, ConfigurationSection section, List<ExplosionSource> sources) {
         this.type = type;
         this.blastRadius = section.getInt("BlastRadius", 0);
         this.destructible = section.getBoolean("Destructible", true);
@@ -44,19 +51,18 @@ public class DurabilityMaterial {
         this.chanceToDrop = section.getDouble("Durability.ChanceToDrop", 0.7);
         this.resetEnabled = section.getBoolean("Durability.ResetEnabled", false);
         this.resetTime = section.getLong("Durability.ResetAfter", 10000L);
-        this.tntEnabled = section.getBoolean("EnabledFor.TNT", true);
-        this.cannonsEnabled = section.getBoolean("EnabledFor.Cannons", false);
-        this.creepersEnabled = section.getBoolean("EnabledFor.Creepers", false);
-        this.ghastsEnabled = section.getBoolean("EnabledFor.Ghasts", false);
-        this.withersEnabled = section.getBoolean("EnabledFor.Withers", false);
-        this.tntMinecartsEnabled = section.getBoolean("EnabledFor.Minecarts", false);
-        this.tntDamage = section.getInt("Damage.TNT", 1);
-        this.cannonDamage = section.getInt("Damage.Cannons", 1);
-        this.creeperDamage = section.getInt("Damage.Creepers", 1);
-        this.chargedCreeperDamage = section.getInt("Damage.ChargedCreepers", 1);
-        this.ghastDamage = section.getInt("Damage.Ghasts", 1);
-        this.witherDamage = section.getInt("Damage.Withers", 1);
-        this.tntMinecartDamage = section.getInt("Damage.Minecarts", 1);
+        this.sources = sources;
+        this.sourceDamage = new int[sources.size()];
+        for (int i = 0; i < sourceDamage.length; i++) {
+            ExplosionSource source = sources.get(i);
+            if (!section.getBoolean("EnabledFor." + source.getEnabledKey(), source.getEnabledDefault())) {
+                sourceDamage[i] = DISABLED;
+            } else if (section.contains("Damage." + source.getDamageKey())) {
+                sourceDamage[i] = Math.max(1, section.getInt("Damage." + source.getDamageKey()));
+            } else {
+                sourceDamage[i] = Math.max(0, source.getDamageDefault());
+            }
+        }
         this.tallyKittens();
     }
 
@@ -80,27 +86,20 @@ public class DurabilityMaterial {
         } else if (chanceToDrop < 0) {
             chanceToDrop = 0;
         }
-        if (tntDamage < 1) {
-            tntDamage = 1;
-        }
-        if (cannonDamage < 1) {
-            cannonDamage = 1;
-        }
-        if (creeperDamage < 1) {
-            creeperDamage = 1;
-        }
-        if (chargedCreeperDamage < 1) {
-            chargedCreeperDamage = 1;
-        }
-        if (ghastDamage < 1) {
-            ghastDamage = 1;
-        }
-        if (witherDamage < 1) {
-            witherDamage = 1;
-        }
-        if (tntMinecartDamage < 1) {
-            tntMinecartDamage = 1;
+    }
+
+    // the damage of the source with a name, or DISABLED if there is no such source
+    private int sourceDamage(String name) {
+        for (int i = 0; i < sourceDamage.length; i++) {
+            if (sources.get(i).getName().equals(name)) {
+                return sourceDamage[i];
+            }
         }
+        return DISABLED;
+    }
+
+    private int legacyDamage(String name) {
+        return Math.max(1, sourceDamage(name));
     }
 
     public Material getType() {
@@ -128,27 +127,27 @@ public class DurabilityMaterial {
     }
 
     public boolean getTntEnabled() {
-        return tntEnabled;
+        return sourceDamage("TNT") != DISABLED;
     }
 
     public boolean getCannonsEnabled() {
-        return cannonsEnabled;
+        return sourceDamage("Cannons") != DISABLED;
     }
 
     public boolean getCreepersEnabled() {
-        return creepersEnabled;
+        return sourceDamage("Creepers") != DISABLED;
     }
 
     public boolean getGhastsEnabled() {
-        return ghastsEnabled;
+        return sourceDamage("Ghasts") != DISABLED;
     }
 
     public boolean getWithersEnabled() {
-        return this.withersEnabled;
+        return sourceDamage("Withers") != DISABLED;
     }
 
     public boolean getTntMinecartsEnabled() {
-        return this.tntMinecartsEnabled;
+        return sourceDamage("Minecarts") != DISABLED;
     }
 
     public int getRadius() {
@@ -156,31 +155,31 @@ public class DurabilityMaterial {
     }
 
     public int getTntDamage() {
-        return tntDamage;
+        return legacyDamage("TNT");
     }
 
     public int getCannonsDamage() {
-        return cannonDamage;
+        return legacyDamage("Cannons");
     }
 
     public int getCreepersDamage() {
-        return creeperDamage;
+        return legacyDamage("Creepers");
     }
 
     public int getChargedCreeperDamage() {
-        return chargedCreeperDamage;
+        return legacyDamage("ChargedCreepers");
     }
 
     public int getGhastsDamage() {
-        return ghastDamage;
+        return legacyDamage("Ghasts");
     }
 
     public int getWithersDamage() {
-        return witherDamage;
+        return legacyDamage("Withers");
     }
 
     public int getTntMinecartsDamage() {
-        return tntMinecartDamage;
+        return legacyDamage("Minecarts");
     }
 
     public double getFluidDamper() {
@@ -191,6 +190,16 @@ public class DurabilityMaterial {
         return destructible;
     }
 
+    /**
+     * Gets the damage an explosion source does to the material
+     *
+     * @param source the index of the source in the sources the material was loaded with
+     * @return the damage, or {@link #DISABLED} if the source is not enabled for the material
+     */
+    public int getSourceDamage(int source) {
+        return sourceDamage[source];
+    }
+
     @Override
     public String toString() {
         return getType() != null ? getType().name() : "material";
@@ -0,0 +1,262 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scratch space of one explosion: marks which blocks around the detonator are ignored, destroyed
+ * or blocked, by block coordinates. Marks within the extent of the explosion are kept in a dense
+ * array over the cube around the detonator, marks outside of it in a hash set, so every mark and
+ * test takes constant time. The blocks destroyed and the locations blocked are also kept in the
+ * order they were marked. The lists are scratch too, hand copies of them to anything that outlives
+ * the explosion.
+ *
+ * An arena is reused for many explosions, see {@link #reset(int, int, int, int)}; once it is set
+ * up for the largest radius it allocates nothing. Not thread safe.
+ */
+public class ExplosionArena {
+
+    /**
+     * Block that is kept by the explosion
+     */
+    public static final int IGNORED = 1;
+    /**
+     * Handled block that is destroyed by the explosion
+     */
+    public static final int DESTROYED = 2;
+    /**
+     * Block that is not handled and is destroyed by the explosion
+     */
+    public static final int UNHANDLED_DESTROYED = 4;
+    /**
+     * Block whose path to the detonator is blocked
+     */
+    public static final int BLOCKED = 8;
+    /**
+     * Block that is in the block list of the explosion event
+     */
+    public static final int IN_EVENT = 16;
+
+    private static final int FLAG_BITS = 5;
+
+    private byte[] flags = new byte[0];
+    private final LongHashSet outside = new LongHashSet();
+    private final List<Block> destroyed = new ArrayList<Block>();
+    private final List<Location> blocked = new ArrayList<Location>();
+    private int centerX;
+    private int centerY;
+    private int centerZ;
+    private int extent;
+    private int side;
+
+    /**
+     * Clears the arena and centers it on the block of a detonation
+     *
+     * @param x      the block x coordinate of the detonation
+     * @param y      the block y coordinate of the detonation
+     * @param z      the block z coordinate of the detonation
+     * @param extent the distance from the detonation covered by the dense array
+     */
+    public void reset(int x, int y, int z, int extent) {
+        this.centerX = x;
+        this.centerY = y;
+        this.centerZ = z;
+        this.extent = extent;
+        this.side = 2 * extent + 1;
+        final int volume = side * side * side;
+        if (flags.length < volume) {
+            flags = new byte[volume];
+        } else {
+            Arrays.fill(flags, 0, volume, (byte) 0);
+        }
+        outside.clear();
+        destroyed.clear();
+        blocked.clear();
+    }
+
+    /**
+     * Drops the blocks and locations of the last explosion
+     */
+    public void clear() {
+        destroyed.clear();
+        blocked.clear();
+    }
+
+    /**
+     * Marks a block
+     *
+     * @param x    the block x coordinate
+     * @param y    the block y coordinate
+     * @param z    the block z coordinate
+     * @param flag the flag to mark the block with
+     * @return true if the block was not marked with the flag yet
+     */
+    public boolean mark(int x, int y, int z, int flag) {
+        final int index = index(x, y, z);
+        if (index < 0) {
+            return outside.add(outsideKey(x, y, z, flag));
+        }
+        if ((flags[index] & flag) != 0) {
+            return false;
+        }
+        flags[index] |= flag;
+        return true;
+    }
+
+    /**
+     * Marks a block, see {@link #mark(int, int, int, int)}
+     *
+     * @param block the block
+     * @param flag  the flag to mark the block with
+     * @return true if the block was not marked with the flag yet
+     */
+    public boolean mark(Block block, int flag) {
+        return mark(block.getX(), block.getY(), block.getZ(), flag);
+    }
+
+    /**
+     * Marks the block of a location, see {@link #mark(int, int, int, int)}
+     *
+     * @param location the location of the block
+     * @param flag     the flag to mark the block with
+     * @return true if the block was not marked with the flag yet
+     */
+    public boolean mark(Location location, int flag) {
+        return mark(location.getBlockX(), location.getBlockY(), location.getBlockZ(), flag);
+    }
+
+    /**
+     * Checks if a block is marked
+     *
+     * @param x     the block x coordinate
+     * @param y     the block y coordinate
+     * @param z     the block z coordinate
+     * @param flags the flags to check, any of them matches
+     * @return true if the block is marked with any of the flags
+     */
+    public boolean isMarked(int x, int y, int z, int flags) {
+        final int index = index(x, y, z);
+        if (index >= 0) {
+            return (this.flags[index] & flags) != 0;
+        }
+        for (int flag = 1; flag < 1 << FLAG_BITS; flag <<= 1) {
+            if ((flags & flag) != 0 && outside.contains(outsideKey(x, y, z, flag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a block is marked, see {@link #isMarked(int, int, int, int)}
+     *
+     * @param block the block
+     * @param flags the flags to check, any of them matches
+     * @return true if the block is marked with any of the flags
+     */
+    public boolean isMarked(Block block, int flags) {
+        return isMarked(block.getX(), block.getY(), block.getZ(), flags);
+    }
+
+    /**
+     * Checks if the block of a location is marked, see {@link #isMarked(int, int, int, int)}
+     *
+     * @param location the location of the block
+     * @param flags    the flags to check, any of them matches
+     * @return true if the block is marked with any of the flags
+     */
+    public boolean isMarked(Location location, int flags) {
+        return isMarked(location.getBlockX(), location.getBlockY(), location.getBlockZ(), flags);
+    }
+
+    /**
+     * Checks if any block of a path is marked
+     *
+     * @param path  the locations of the blocks of the path
+     * @param flags the flags to check, any of them matches
+     * @return true if a block of the path is marked with any of the flags
+     */
+    public boolean isAnyMarked(List<Location> path, int flags) {
+        for (int i = 0; i < path.size(); i++) {
+            if (isMarked(path.get(i), flags)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks a handled block as destroyed
+     *
+     * @param block the block
+     */
+    public void destroy(Block block) {
+        if (mark(block, DESTROYED)) {
+            destroyed.add(block);
+        }
+    }
+
+    /**
+     * Marks the block of a location as blocked
+     *
+     * @param location the location of the block
+     */
+    public void block(Location location) {
+        if (mark(location, BLOCKED)) {
+            blocked.add(location);
+        }
+    }
+
+    /**
+     * Removes the blocks that were ignored from the destroyed blocks
+     */
+    public void removeIgnoredFromDestroyed() {
+        int kept = 0;
+        for (int i = 0; i < destroyed.size(); i++) {
+            Block block = destroyed.get(i);
+            if (!isMarked(block, IGNORED)) {
+                destroyed.set(kept++, block);
+            }
+        }
+        destroyed.subList(kept, destroyed.size()).clear();
+    }
+
+    /**
+     * Gets the handled blocks destroyed, in the order they were marked
+     *
+     * @return list of blocks
+     */
+    public List<Block> getDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * Gets the locations of the blocks that were blocked, in the order they were marked
+     *
+     * @return list of locations
+     */
+    public List<Location> getBlocked() {
+        return blocked;
+    }
+
+    private int index(int x, int y, int z) {
+        final int dx = x - centerX + extent;
+        final int dy = y - centerY + extent;
+        final int dz = z - centerZ + extent;
+        if (dx < 0 || dy < 0 || dz < 0 || dx >= side || dy >= side || dz >= side) {
+            return -1;
+        }
+        return (dx * side + dy) * side + dz;
+    }
+
+    private long outsideKey(int x, int y, int z, int flag) {
+        return ((long) ((x - centerX) & 0xFFFF) << (32 + FLAG_BITS))
+                | ((long) ((y - centerY) & 0xFFFF) << (16 + FLAG_BITS))
+                | ((long) ((z - centerZ) & 0xFFFF) << FLAG_BITS)
+                | flag;
+    }
+}
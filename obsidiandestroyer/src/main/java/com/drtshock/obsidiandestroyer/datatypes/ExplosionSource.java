@@ -0,0 +1,100 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import org.bukkit.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A kind of explosion materials take damage from, read from the 'ExplosionSources' section of the
+ * config. Every material reads whether the source is enabled from 'EnabledFor.&lt;enabled key&gt;'
+ * and its damage from 'Damage.&lt;damage key&gt;' in materials.yml.
+ */
+public class ExplosionSource {
+
+    private final String name;
+    private final List<EntityType> entityTypes;
+    private final boolean charged;
+    private final String enabledKey;
+    private final String damageKey;
+    private final boolean enabledDefault;
+    private final int damageDefault;
+
+    /**
+     * Creates an explosion source
+     *
+     * @param name           the name of the source
+     * @param entityTypes    the entity types exploding as this source
+     * @param charged        true if only charged creepers explode as this source
+     * @param enabledKey     the key under 'EnabledFor' of a material
+     * @param damageKey      the key under 'Damage' of a material
+     * @param enabledDefault whether the source is enabled for materials without the enabled key
+     * @param damageDefault  the damage for materials without the damage key
+     */
+    public ExplosionSource(String name, List<EntityType> entityTypes, boolean charged, String enabledKey, String damageKey, boolean enabledDefault, int damageDefault) {
+        this.name = name;
+        this.entityTypes = Collections.unmodifiableList(new ArrayList<EntityType>(entityTypes));
+        this.charged = charged;
+        this.enabledKey = enabledKey;
+        this.damageKey = damageKey;
+        this.enabledDefault = enabledDefault;
+        this.damageDefault = damageDefault;
+    }
+
+    private ExplosionSource(String name, boolean charged, String enabledKey, boolean enabledDefault, int damageDefault, EntityType... entityTypes) {
+        this(name, Arrays.asList(entityTypes), charged, enabledKey, name, enabledDefault, damageDefault);
+    }
+
+    /**
+     * Gets the sources used when the config has none, matching the keys of materials.yml
+     *
+     * @return the default sources
+     */
+    public static List<ExplosionSource> defaults() {
+        List<ExplosionSource> sources = new ArrayList<ExplosionSource>();
+        sources.add(new ExplosionSource("TNT", false, "TNT", true, 1, EntityType.PRIMED_TNT));
+        sources.add(new ExplosionSource("Minecarts", false, "Minecarts", false, 1, EntityType.MINECART_TNT));
+        sources.add(new ExplosionSource("Creepers", false, "Creepers", false, 1, EntityType.CREEPER));
+        sources.add(new ExplosionSource("ChargedCreepers", true, "Creepers", false, 1, EntityType.CREEPER));
+        sources.add(new ExplosionSource("Withers", false, "Withers", false, 1, EntityType.WITHER, EntityType.WITHER_SKULL));
+        sources.add(new ExplosionSource("Ghasts", false, "Ghasts", false, 1, EntityType.GHAST, EntityType.FIREBALL, EntityType.SMALL_FIREBALL));
+        sources.add(new ExplosionSource("Cannons", false, "Cannons", false, 1));
+        sources.add(new ExplosionSource("Snowballs", false, "Snowballs", true, 0, EntityType.SNOWBALL));
+        return sources;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<EntityType> getEntityTypes() {
+        return entityTypes;
+    }
+
+    public boolean isCharged() {
+        return charged;
+    }
+
+    public String getEnabledKey() {
+        return enabledKey;
+    }
+
+    public String getDamageKey() {
+        return damageKey;
+    }
+
+    public boolean getEnabledDefault() {
+        return enabledDefault;
+    }
+
+    public int getDamageDefault() {
+        return damageDefault;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -52,8 +52,10 @@ public class Key {
     @Override
     public int hashCode() {
         final int prime = 31;
-        int result = 1;
-        result = prime * result + toLocation().hashCode();
+        int result = world.hashCode();
+        result = prime * result + x;
+        result = prime * result + y;
+        result = prime * result + z;
         return result;
     }
 }
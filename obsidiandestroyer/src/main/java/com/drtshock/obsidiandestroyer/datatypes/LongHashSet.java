@@ -0,0 +1,230 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash set of primitive longs. Lookups never allocate. Not thread safe.
+ */
+public class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private boolean containsZero = false;
+    private int size = 0;
+    private int mask;
+
+    /**
+     * Creates an empty set
+     */
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty set
+     *
+     * @param expected the amount of values expected to be added
+     */
+    public LongHashSet(int expected) {
+        allocate(capacityFor(expected));
+    }
+
+    /**
+     * Packs chunk coordinates into a single value
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the packed chunk coordinates
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the chunk x coordinate of packed chunk coordinates
+     *
+     * @param key the packed chunk coordinates
+     * @return the chunk x coordinate
+     */
+    public static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Gets the chunk z coordinate of packed chunk coordinates
+     *
+     * @param key the packed chunk coordinates
+     * @return the chunk z coordinate
+     */
+    public static int chunkZ(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Checks if the set contains a value
+     *
+     * @param value the value to check
+     * @return true if the value is in the set
+     */
+    public boolean contains(long value) {
+        if (value == 0L) {
+            return containsZero;
+        }
+        int index = index(value);
+        while (keys[index] != 0L) {
+            if (keys[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param value the value to add
+     * @return true if the value was not in the set yet
+     */
+    public boolean add(long value) {
+        if (value == 0L) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int index = index(value);
+        while (keys[index] != 0L) {
+            if (keys[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = value;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set
+     *
+     * @param value the value to remove
+     * @return true if the value was in the set
+     */
+    public boolean remove(long value) {
+        if (value == 0L) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int index = index(value);
+        while (keys[index] != value) {
+            if (keys[index] == 0L) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = 0L;
+        size--;
+        // shift the following entries of the probe sequence back into the gap
+        int gap = index;
+        index = (index + 1) & mask;
+        while (keys[index] != 0L) {
+            final int home = index(keys[index]);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                keys[index] = 0L;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the amount of values in the set
+     *
+     * @return the size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the set is empty
+     *
+     * @return true if there are no values in the set
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values from the set
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Copies the values of the set
+     *
+     * @return array with every value of the set
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsZero) {
+            values[i++] = 0L;
+        }
+        for (long key : keys) {
+            if (key != 0L) {
+                values[i++] = key;
+            }
+        }
+        return values;
+    }
+
+    private int index(long value) {
+        final long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        allocate(capacity);
+        for (long key : old) {
+            if (key != 0L) {
+                int index = index(key);
+                while (keys[index] != 0L) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open addressing hash map with primitive long keys. Lookups never allocate. Not thread safe.
+ *
+ * @param <V> the value type
+ */
+public class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private Object zeroValue = null;
+    private boolean containsZero = false;
+    private int size = 0;
+    private int mask;
+
+    /**
+     * Creates an empty map
+     */
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map
+     *
+     * @param expected the amount of entries expected to be added
+     */
+    public LongObjectMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expected * 4) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value of a key
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0L) {
+            return (V) zeroValue;
+        }
+        int index = index(key);
+        while (keys[index] != 0L) {
+            if (keys[index] == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the map contains a key
+     *
+     * @param key the key
+     * @return true if the key is in the map
+     */
+    public boolean containsKey(long key) {
+        if (key == 0L) {
+            return containsZero;
+        }
+        int index = index(key);
+        while (keys[index] != 0L) {
+            if (keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the value of a key
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0L) {
+            V previous = (V) zeroValue;
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int index = index(key);
+        while (keys[index] != 0L) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key from the map
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0L) {
+            V previous = (V) zeroValue;
+            if (containsZero) {
+                containsZero = false;
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int index = index(key);
+        while (keys[index] != key) {
+            if (keys[index] == 0L) {
+                return null;
+            }
+            index = (index + 1) & mask;
+        }
+        V previous = (V) values[index];
+        keys[index] = 0L;
+        values[index] = null;
+        size--;
+        // shift the following entries of the probe sequence back into the gap
+        int gap = index;
+        index = (index + 1) & mask;
+        while (keys[index] != 0L) {
+            final int home = index(keys[index]);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                keys[index] = 0L;
+                values[index] = null;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        return previous;
+    }
+
+    /**
+     * Gets the amount of entries in the map
+     *
+     * @return the size of the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map is empty
+     *
+     * @return true if there are no entries in the map
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the map
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, null);
+        containsZero = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * Copies the keys of the map
+     *
+     * @return array with every key of the map
+     */
+    public long[] keys() {
+        long[] copy = new long[size];
+        int i = 0;
+        if (containsZero) {
+            copy[i++] = 0L;
+        }
+        for (long key : keys) {
+            if (key != 0L) {
+                copy[i++] = key;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the values of the map
+     *
+     * @return list with every value of the map
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> copy = new ArrayList<V>(size);
+        if (containsZero) {
+            copy.add((V) zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0L) {
+                copy.add((V) values[i]);
+            }
+        }
+        return copy;
+    }
+
+    private int index(long key) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0L) {
+                int index = index(oldKeys[i]);
+                while (keys[index] != 0L) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.drtshock.obsidiandestroyer.datatypes;
+
+import java.util.List;
+
+/**
+ * Hashed timing wheel of deadlines. Deadlines are put into slots of a fixed time span; advancing
+ * the wheel only visits the slots that passed, so the cost is bound by the amount of entries in
+ * those slots instead of the amount of entries in the wheel. Deadlines further away than one
+ * rotation stay in their slot for the following rotations.
+ *
+ * Entries only hold a key and an id, never the object they belong to, so a pending deadline does
+ * not keep its owner alive. Entries are never removed before their deadline; owners have to look
+ * themselves up by key and check if an expired entry is still current.
+ */
+public class TimingWheel {
+
+    private final Entry[] slots;
+    private final int mask;
+    private final long resolution;
+    private long tick;
+    private int size = 0;
+
+    /**
+     * Creates a timing wheel
+     *
+     * @param slots      the amount of slots, rounded up to a power of two
+     * @param resolution the time span of a slot in milliseconds
+     * @param now        the current time in milliseconds
+     */
+    public TimingWheel(int slots, long resolution, long now) {
+        int capacity = 1;
+        while (capacity < slots) {
+            capacity <<= 1;
+        }
+        this.slots = new Entry[capacity];
+        this.mask = capacity - 1;
+        this.resolution = resolution;
+        this.tick = now / resolution;
+    }
+
+    /**
+     * Adds a deadline. Deadlines that already passed expire on the next advance.
+     *
+     * @param key      the key of the owner of the entry
+     * @param id       the id of the entry within its owner
+     * @param deadline the deadline in milliseconds
+     */
+    public synchronized void schedule(long key, int id, long deadline) {
+        final int slot = (int) (Math.max(deadline / resolution, tick) & mask);
+        slots[slot] = new Entry(key, id, deadline, slots[slot]);
+        size++;
+    }
+
+    /**
+     * Advances the wheel and removes every entry whose deadline passed
+     *
+     * @param now     the current time in milliseconds
+     * @param expired the list to add the expired entries to
+     * @return the amount of expired entries
+     */
+    public synchronized int advance(long now, List<Entry> expired) {
+        final long target = now / resolution;
+        // a full rotation visits every slot, no need to go around more than once
+        final long last = Math.min(target, tick + slots.length - 1);
+        int count = 0;
+        for (long t = tick; t <= last; t++) {
+            final int slot = (int) (t & mask);
+            Entry previous = null;
+            Entry entry = slots[slot];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.deadline <= now) {
+                    if (previous == null) {
+                        slots[slot] = next;
+                    } else {
+                        previous.next = next;
+                    }
+                    entry.next = null;
+                    expired.add(entry);
+                    count++;
+                } else {
+                    previous = entry;
+                }
+                entry = next;
+            }
+        }
+        // the current slot is visited again, its later deadlines are still pending
+        tick = Math.max(tick, target);
+        size -= count;
+        return count;
+    }
+
+    /**
+     * Gets the amount of pending entries
+     *
+     * @return the amount of entries
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * Deadline of an owner
+     */
+    public static class Entry {
+
+        public final long key;
+        public final int id;
+        public final long deadline;
+        private Entry next;
+
+        private Entry(long key, int id, long deadline, Entry next) {
+            this.key = key;
+            this.id = id;
+            this.deadline = deadline;
+            this.next = next;
+        }
+    }
+}
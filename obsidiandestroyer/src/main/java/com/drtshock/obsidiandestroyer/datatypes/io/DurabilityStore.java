@@ -0,0 +1,103 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Stores the encoded durability data of chunks, see {@link ODRFile}. Chunks are addressed by world
+ * name and packed chunk coordinates, see {@link LongHashSet#chunkKey(int, int)}. Implementations
+ * are thread safe.
+ */
+public interface DurabilityStore {
+
+    /**
+     * Reads the data of a chunk
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the chunk data, or null if the chunk has no data
+     * @throws IOException thrown if something happens
+     */
+    byte[] get(String world, int chunkX, int chunkZ) throws IOException;
+
+    /**
+     * Writes the data of a chunk, replacing the previous data
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param data   the data to write
+     * @param length the amount of bytes of data to write, 0 to delete the chunk
+     * @throws IOException thrown if something happens
+     */
+    void put(String world, int chunkX, int chunkZ, byte[] data, int length) throws IOException;
+
+    /**
+     * Removes the data of a chunk
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @throws IOException thrown if something happens
+     */
+    void delete(String world, int chunkX, int chunkZ) throws IOException;
+
+    /**
+     * Reads the data of several chunks of a world at once
+     *
+     * @param world  the world name
+     * @param chunks the packed chunk coordinates
+     * @return the data of every chunk that has data
+     * @throws IOException thrown if something happens
+     */
+    LongObjectMap<byte[]> getAll(String world, long[] chunks) throws IOException;
+
+    /**
+     * Writes the data of several chunks of a world at once. Empty data deletes the chunk.
+     *
+     * @param world the world name
+     * @param data  the data per packed chunk coordinates
+     * @throws IOException thrown if something happens
+     */
+    void putAll(String world, LongObjectMap<byte[]> data) throws IOException;
+
+    /**
+     * Removes the data of several chunks of a world at once
+     *
+     * @param world  the world name
+     * @param chunks the packed chunk coordinates
+     * @throws IOException thrown if something happens
+     */
+    void deleteAll(String world, long[] chunks) throws IOException;
+
+    /**
+     * Lists every chunk that has data
+     *
+     * @return set of packed chunk coordinates per world name
+     * @throws IOException thrown if something happens
+     */
+    Map<String, LongHashSet> getStoredChunks() throws IOException;
+
+    /**
+     * Reclaims the space left by removed and rewritten chunks
+     *
+     * @throws IOException thrown if something happens
+     */
+    void compact() throws IOException;
+
+    /**
+     * Forces the written data to disk, so changes kept elsewhere until then can be dropped
+     *
+     * @throws IOException thrown if something happens
+     */
+    void sync() throws IOException;
+
+    /**
+     * Releases the open handles of the store. The store reopens them when it is used again.
+     */
+    void close();
+}
@@ -0,0 +1,199 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Archive of chunk data in one file, written in one go. Used for snapshots, and for the chunks
+ * that could not be written into the store before the server stopped; those emergency files are
+ * applied to the store on the next start.
+ */
+public class ODRArchive {
+
+    public static final String EXTENSION = ".oda";
+    private static final String EMERGENCY_PREFIX = "emergency.";
+    private static final int MAGIC = ('O' << 24) | ('D' << 16) | ('R' << 8) | 'E';
+    private static final int VERSION = 1;
+    private static final byte CHUNK = 1;
+
+    private final File file;
+    private final File temp;
+    private final FileOutputStream stream;
+    private final DataOutputStream output;
+    private int chunks = 0;
+    private boolean aborted = false;
+
+    /**
+     * Creates a new archive. The file only appears once the archive is closed.
+     *
+     * @param file the archive file
+     * @throws IOException thrown if the file can not be created
+     */
+    public ODRArchive(File file) throws IOException {
+        this.file = file;
+        this.temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        this.stream = new FileOutputStream(temp);
+        this.output = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+    }
+
+    /**
+     * Adds the data of a chunk
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param data   the chunk data, see {@link ODRFile}; empty to remove the chunk
+     * @throws IOException thrown if something happens
+     */
+    public synchronized void add(String world, int chunkX, int chunkZ, byte[] data) throws IOException {
+        if (aborted) {
+            throw new IOException("Archive " + file.getName() + " was aborted");
+        }
+        output.writeByte(CHUNK);
+        output.writeUTF(world);
+        output.writeInt(chunkX);
+        output.writeInt(chunkZ);
+        output.writeInt(data.length);
+        output.write(data);
+        chunks++;
+    }
+
+    /**
+     * Gets the amount of chunks added
+     *
+     * @return the amount of chunks
+     */
+    public synchronized int getChunkCount() {
+        return chunks;
+    }
+
+    /**
+     * Creates a new emergency file in a directory
+     *
+     * @param directory the directory to write to
+     * @return the emergency file
+     * @throws IOException thrown if the file can not be created
+     */
+    public static ODRArchive emergency(File directory) throws IOException {
+        return new ODRArchive(new File(directory, EMERGENCY_PREFIX + System.currentTimeMillis() + EXTENSION));
+    }
+
+    /**
+     * Gets the archive file
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Flushes the file to disk and moves it into place
+     *
+     * @throws IOException thrown if something happens
+     */
+    public synchronized void close() throws IOException {
+        if (aborted) {
+            throw new IOException("Archive " + file.getName() + " was aborted");
+        }
+        try {
+            output.flush();
+            stream.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to create " + file.getName());
+        }
+    }
+
+    /**
+     * Closes the archive and removes what was written so far
+     */
+    public synchronized void abort() {
+        aborted = true;
+        try {
+            output.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        temp.delete();
+    }
+
+    /**
+     * Gets the emergency files of a directory in the order they were written
+     *
+     * @param directory the directory holding the emergency files
+     * @return sorted list of emergency files
+     */
+    public static List<File> emergencyFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        File[] list = directory.listFiles();
+        if (list != null) {
+            for (File file : list) {
+                if (file.getName().startsWith(EMERGENCY_PREFIX) && file.getName().endsWith(EXTENSION)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return file1.getName().compareTo(file2.getName());
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Applies the emergency files of a directory to the store and removes them
+     *
+     * @param directory the directory holding the emergency files
+     * @param store     the store to apply the chunks to
+     * @return the amount of applied chunks
+     * @throws IOException thrown if a file can not be read
+     */
+    public static int applyEmergencyFiles(File directory, DurabilityStore store) throws IOException {
+        List<File> files = emergencyFiles(directory);
+        // later files replace the chunks of earlier ones
+        Map<String, LongObjectMap<byte[]>> byWorld = new HashMap<String, LongObjectMap<byte[]>>();
+        for (File file : files) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException("Invalid archive " + file.getName());
+                }
+                while (input.read() == CHUNK) {
+                    String world = input.readUTF();
+                    final int chunkX = input.readInt();
+                    final int chunkZ = input.readInt();
+                    byte[] data = new byte[input.readInt()];
+                    input.readFully(data);
+                    LongObjectMap<byte[]> chunks = byWorld.get(world);
+                    if (chunks == null) {
+                        chunks = new LongObjectMap<byte[]>(64);
+                        byWorld.put(world, chunks);
+                    }
+                    chunks.put(LongHashSet.chunkKey(chunkX, chunkZ), data);
+                }
+            } finally {
+                input.close();
+            }
+        }
+        int applied = 0;
+        for (Map.Entry<String, LongObjectMap<byte[]>> entry : byWorld.entrySet()) {
+            store.putAll(entry.getKey(), entry.getValue());
+            applied += entry.getValue().size();
+        }
+        store.sync();
+        for (File file : files) {
+            file.delete();
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,121 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ODRConverter {
+
+    public static final String LEGACY_EXTENSION = ".odr";
+
+    private final File directory;
+    private final DurabilityStore store;
+    private final List<String> failed = new ArrayList<String>();
+    private int converted = 0;
+
+    /**
+     * Converts the legacy per chunk files of a directory into a store
+     *
+     * @param directory the directory holding the legacy files
+     * @param store     the store to convert into
+     */
+    public ODRConverter(File directory, DurabilityStore store) {
+        this.directory = directory;
+        this.store = store;
+    }
+
+    /**
+     * Checks if a directory still holds legacy per chunk files
+     *
+     * @param directory the directory to check
+     * @return true if a conversion is needed
+     */
+    public static boolean hasLegacyFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return false;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(LEGACY_EXTENSION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves every legacy 'chunkX.chunkZ.world.odr' file into the store and removes the file
+     *
+     * @return the amount of converted chunk files
+     */
+    public int convert() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (!name.endsWith(LEGACY_EXTENSION)) {
+                continue;
+            }
+            // world names may contain dots, only split off the chunk coordinates
+            String[] parts = name.substring(0, name.length() - LEGACY_EXTENSION.length()).split("\\.", 3);
+            if (parts.length < 3) {
+                failed.add(name);
+                continue;
+            }
+            try {
+                final int chunkX = Integer.parseInt(parts[0]);
+                final int chunkZ = Integer.parseInt(parts[1]);
+                byte[] data = readFully(file);
+                // drop a partially written trailing record
+                final int length = data.length - (data.length % ODRFile.RECORD_SIZE);
+                store.put(parts[2], chunkX, chunkZ, data, length);
+                if (!file.delete()) {
+                    failed.add(name);
+                }
+                converted++;
+            } catch (NumberFormatException e) {
+                failed.add(name);
+            } catch (IOException e) {
+                failed.add(name);
+                e.printStackTrace();
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Gets the legacy files that could not be converted or removed
+     *
+     * @return list of file names
+     */
+    public List<String> getFailed() {
+        return failed;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int r = input.read(data, read, data.length - read);
+                if (r < 0) {
+                    break;
+                }
+                read += r;
+            }
+            if (read < data.length) {
+                byte[] trimmed = new byte[read];
+                System.arraycopy(data, 0, trimmed, 0, read);
+                return trimmed;
+            }
+            return data;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -1,55 +1,128 @@
 package com.drtshock.obsidiandestroyer.datatypes.io;
 
-import com.drtshock.obsidiandestroyer.datatypes.Key;
-import org.bukkit.Location;
-import org.bukkit.World;
-
 import java.io.*;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 
 public class ODRFile {
 
-    private FileOutputStream output;
-    private FileInputStream input;
-    private FileChannel channel;
+    /**
+     * Size of a version 1 record: absolute x, y and z, durability and time
+     */
+    public static final int RECORD_SIZE = 24;
+    /**
+     * Current version of the encoding
+     */
+    public static final int VERSION = 2;
+    private static final int MAGIC = ('O' << 24) | ('D' << 16) | ('R' << 8) | VERSION;
+    // packed position, durability varint and time varlong
+    private static final int MAX_ENCODED_RECORD = 2 + 5 + 10;
+    private static final int MAX_ENCODED_HEADER = 4 + 5 + 5 + 10;
+
+    private DurabilityStore store;
+    private String world;
+    private int chunkX, chunkZ;
     private ByteBuffer buffer = null;
     private boolean write = false;
+    private int version = 1;
+    private long baseTime = 0L;
+    private int nextX, nextY, nextZ, nextValue;
+    private long nextTime;
 
     /**
      * Creates a new ODRegion file
      */
     public ODRFile() {
-        buffer = ByteBuffer.allocateDirect(24);
     }
 
     /**
-     * Prepares the file for read or write
+     * Prepares the data of a chunk in a store for read or write
      *
-     * @param file  the file to prepare
-     * @param write true to write to the file, false otherwise
-     * @throws FileNotFoundException thrown if the file is missing
+     * @param store  the store holding the chunk
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param write  true to write to the store, false otherwise
+     * @throws IOException thrown if the data can not be read
      */
-    public void prepare(File file, boolean write) throws FileNotFoundException {
+    public void prepare(DurabilityStore store, String world, int chunkX, int chunkZ, boolean write) throws IOException {
         if (write) {
-            output = new FileOutputStream(file, false);
-            channel = output.getChannel();
+            prepare(chunkX, chunkZ);
         } else {
-            input = new FileInputStream(file);
-            channel = input.getChannel();
+            prepare(store.get(world, chunkX, chunkZ));
         }
-        this.write = write;
+        this.store = store;
+        this.world = world;
     }
 
     /**
-     * Writes a block to file
+     * Prepares reading chunk data that was already loaded
      *
-     * @param location   the location of the block
-     * @param duraAmount material durability amount
-     * @throws IOException thrown if something happens
+     * @param data the chunk data, or null for none
+     */
+    public void prepare(byte[] data) {
+        this.store = null;
+        this.write = false;
+        buffer = ByteBuffer.wrap(data != null ? data : new byte[0]);
+        readHeader();
+    }
+
+    /**
+     * Prepares writing the data of a chunk in memory, see {@link #toByteArray()}
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    public void prepare(int chunkX, int chunkZ) {
+        this.store = null;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.write = true;
+        buffer = ByteBuffer.allocate(RECORD_SIZE * 16);
+    }
+
+    /**
+     * Encodes the records written so far. The data is written as is by {@link #close()}.
+     *
+     * @return the encoded chunk data
      */
-    public void write(Location location, int duraAmount) throws IOException {
-        write(location.getBlockX(), location.getBlockY(), location.getBlockZ(), duraAmount, 0L);
+    public byte[] toByteArray() {
+        ByteBuffer records = buffer.duplicate();
+        records.flip();
+        ByteBuffer data = encode(records);
+        byte[] bytes = new byte[data.limit()];
+        data.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Detects the version of the data read. Version 1 data has no header and starts with the
+     * first record right away; no valid x location matches the magic value.
+     */
+    private void readHeader() {
+        version = 1;
+        if (buffer.remaining() < 4 || buffer.getInt(buffer.position()) != MAGIC) {
+            return;
+        }
+        try {
+            buffer.getInt();
+            chunkX = zigZagDecode(readVarInt());
+            chunkZ = zigZagDecode(readVarInt());
+            baseTime = readVarLong();
+            version = VERSION;
+        } catch (BufferUnderflowException e) {
+            // truncated header, nothing to read
+            buffer.position(buffer.limit());
+        }
+    }
+
+    /**
+     * Makes room for an amount of records to be written without growing the buffer in between
+     *
+     * @param records the amount of records
+     */
+    public void reserve(int records) {
+        ensureCapacity(records * RECORD_SIZE);
     }
 
     /**
@@ -63,46 +136,64 @@ public class ODRFile {
      * @throws IOException thrown if something happens
      */
     public void write(int x, int y, int z, int duraAmount, long duraTime) throws IOException {
-        buffer.clear();
+        ensureCapacity(RECORD_SIZE);
         buffer.putInt(x);
         buffer.putInt(y);
         buffer.putInt(z);
         buffer.putInt(duraAmount);
         buffer.putLong(duraTime);
-        buffer.flip();
-        channel.write(buffer);
     }
 
     /**
-     * Writes an entity to file
+     * Passes every remaining record to a visitor without creating objects for them
      *
-     * @param location the location of the entity
-     * @param duraTime material durability reset time
-     * @param duraTime material durability reset time
+     * @param visitor the visitor receiving the records
+     * @return the amount of records read
      * @throws IOException thrown if something happens
      */
-    public void write(Location location, int duraAmount, long duraTime) throws IOException {
-        write(location.getBlockX(), location.getBlockY(), location.getBlockZ(), duraAmount, duraTime);
+    public int read(RecordVisitor visitor) throws IOException {
+        int records = 0;
+        while (next()) {
+            visitor.visit(nextX, nextY, nextZ, nextValue, nextTime);
+            records++;
+        }
+        return records;
     }
 
     /**
-     * Gets the next block in the file
+     * Decodes the next record into the next fields
      *
-     * @param world the world for location creation/reading
-     * @return the entry (a block) or null if EOF has been reached / nothing was read
-     * @throws IOException thrown if something happens
+     * @return false if no complete record is left
      */
-    public Key getNext(World world) throws IOException {
-        int read = channel.read(buffer);
-        if (read <= 0) {
-            return null;
+    private boolean next() {
+        if (version == 1) {
+            if (buffer.remaining() < RECORD_SIZE) {
+                return false;
+            }
+            nextX = buffer.getInt();
+            nextY = buffer.getInt();
+            nextZ = buffer.getInt();
+            nextValue = buffer.getInt();
+            nextTime = buffer.getLong();
+            return true;
+        }
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        try {
+            final int position = buffer.getShort() & 0xFFFF;
+            nextX = (chunkX << 4) | (position & 15);
+            nextZ = (chunkZ << 4) | ((position >> 4) & 15);
+            nextY = position >> 8;
+            nextValue = readVarInt();
+            final long time = readVarLong();
+            nextTime = time == 0L ? 0L : baseTime + time - 1L;
+            return true;
+        } catch (BufferUnderflowException e) {
+            // partially written trailing record
+            buffer.position(buffer.limit());
+            return false;
         }
-        buffer.position(0);
-        int x = buffer.getInt(), y = buffer.getInt(), z = buffer.getInt();
-        int value = buffer.getInt();
-        long time = buffer.getLong();
-        buffer.clear();
-        return new Key(world.getName(), x, y, z, value, time);
     }
 
     /**
@@ -111,10 +202,135 @@ public class ODRFile {
      * @throws IOException thrown if something goes wrong
      */
     public void close() throws IOException {
-        if (write) {
-            output.close();
-        } else {
-            input.close();
+        if (write && store != null) {
+            buffer.flip();
+            ByteBuffer data = encode(buffer);
+            store.put(world, chunkX, chunkZ, data.array(), data.limit());
         }
+        store = null;
+        world = null;
+        buffer = null;
+        version = 1;
+        baseTime = 0L;
+    }
+
+    /**
+     * Encodes the collected version 1 records into the current version. Records that can not be
+     * packed, as they are outside of a single chunk or the height range, are stored as version 1.
+     *
+     * @param buffer the version 1 records
+     * @return the encoded data
+     */
+    private ByteBuffer encode(ByteBuffer buffer) {
+        final int records = buffer.remaining() / RECORD_SIZE;
+        if (records == 0) {
+            return buffer;
+        }
+        long base = Long.MAX_VALUE;
+        for (int i = 0; i < records; i++) {
+            final int offset = i * RECORD_SIZE;
+            final int y = buffer.getInt(offset + 4);
+            if (buffer.getInt(offset) >> 4 != chunkX || buffer.getInt(offset + 8) >> 4 != chunkZ || y < 0 || y > 255) {
+                return buffer;
+            }
+            final long time = buffer.getLong(offset + 16);
+            if (time != 0L && time < base) {
+                base = time;
+            }
+        }
+        if (base == Long.MAX_VALUE) {
+            base = 0L;
+        }
+
+        ByteBuffer encoded = ByteBuffer.allocate(MAX_ENCODED_HEADER + records * MAX_ENCODED_RECORD);
+        encoded.putInt(MAGIC);
+        writeVarInt(encoded, zigZagEncode(chunkX));
+        writeVarInt(encoded, zigZagEncode(chunkZ));
+        writeVarLong(encoded, base);
+        for (int i = 0; i < records; i++) {
+            final int offset = i * RECORD_SIZE;
+            final int x = buffer.getInt(offset), y = buffer.getInt(offset + 4), z = buffer.getInt(offset + 8);
+            encoded.putShort((short) ((y << 8) | ((z & 15) << 4) | (x & 15)));
+            writeVarInt(encoded, buffer.getInt(offset + 12));
+            final long time = buffer.getLong(offset + 16);
+            writeVarLong(encoded, time == 0L ? 0L : time - base + 1L);
+        }
+        encoded.flip();
+        return encoded;
+    }
+
+    private int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private long readVarLong() {
+        long value = 0L;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+
+    /**
+     * Receives the records of a file one by one
+     */
+    public interface RecordVisitor {
+
+        /**
+         * Called for every record read
+         *
+         * @param x          the x location
+         * @param y          the y location
+         * @param z          the z location
+         * @param duraAmount material durability amount
+         * @param duraTime   material durability reset time
+         */
+        void visit(int x, int y, int z, int duraAmount, long duraTime);
     }
 }
@@ -0,0 +1,503 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class ODRJournal {
+
+    public static final String EXTENSION = ".odj";
+    private static final String PREFIX = "journal.";
+
+    private static final byte ADD = 1;
+    private static final byte TIMER = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+
+    private final File directory;
+    private final Object fileLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final DataOutputStream output = new DataOutputStream(pending);
+    // length of the changes logged before a requested rotation, they still go into the segment
+    // being sealed; -1 if no rotation is requested
+    private int rotationMark = -1;
+    private FileOutputStream segment;
+    private FileChannel channel;
+    private int sequence;
+    private int sealed = -1;
+    private volatile boolean failed = false;
+
+    /**
+     * Opens a new journal segment after the existing ones of a directory
+     *
+     * @param directory the directory holding the journal segments
+     * @throws IOException thrown if the segment can not be created
+     */
+    public ODRJournal(File directory) throws IOException {
+        this.directory = directory;
+        List<File> segments = segments(directory);
+        this.sequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1));
+        openSegment(sequence + 1);
+    }
+
+    /**
+     * Gets the journal segments of a directory in the order they were written
+     *
+     * @param directory the directory holding the journal segments
+     * @return sorted list of segment files
+     */
+    public static List<File> segments(File directory) {
+        List<File> segments = new ArrayList<File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(PREFIX) && file.getName().endsWith(EXTENSION) && sequenceOf(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        }
+        Collections.sort(segments, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return sequenceOf(file1) < sequenceOf(file2) ? -1 : (sequenceOf(file1) == sequenceOf(file2) ? 0 : 1);
+            }
+        });
+        return segments;
+    }
+
+    private static int sequenceOf(File file) {
+        final String name = file.getName();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        } catch (IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Logs a tracked block
+     *
+     * @param world      the world name
+     * @param x          the x location
+     * @param y          the y location
+     * @param z          the z location
+     * @param duraAmount material durability amount
+     */
+    public synchronized void logAdd(String world, int x, int y, int z, int duraAmount) {
+        try {
+            output.writeByte(ADD);
+            output.writeUTF(world);
+            writePosition(x, y, z);
+            output.writeInt(duraAmount);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs a tracked block with a timer
+     *
+     * @param world      the world name
+     * @param x          the x location
+     * @param y          the y location
+     * @param z          the z location
+     * @param duraAmount material durability amount
+     * @param duraTime   material durability reset time
+     */
+    public synchronized void logTimer(String world, int x, int y, int z, int duraAmount, long duraTime) {
+        try {
+            output.writeByte(TIMER);
+            output.writeUTF(world);
+            writePosition(x, y, z);
+            output.writeInt(duraAmount);
+            output.writeLong(duraTime);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs the removal of a tracked block
+     *
+     * @param world the world name
+     * @param x     the x location
+     * @param y     the y location
+     * @param z     the z location
+     */
+    public synchronized void logRemove(String world, int x, int y, int z) {
+        try {
+            output.writeByte(REMOVE);
+            output.writeUTF(world);
+            writePosition(x, y, z);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Logs the removal of all tracked blocks of a chunk
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    public synchronized void logClear(String world, int chunkX, int chunkZ) {
+        try {
+            output.writeByte(CLEAR);
+            output.writeUTF(world);
+            output.writeInt(chunkX);
+            output.writeInt(chunkZ);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writePosition(int x, int y, int z) throws IOException {
+        output.writeInt(x);
+        output.writeInt(y);
+        output.writeInt(z);
+    }
+
+    /**
+     * Writes all logged changes to the current segment and forces them to disk. Changes logged
+     * between two commits are written together. A requested rotation is done first. Changes are
+     * only dropped once they are on disk, a failed commit leaves them to the next one.
+     */
+    public void commit() {
+        synchronized (fileLock) {
+            final byte[] data;
+            final int mark;
+            synchronized (this) {
+                if (rotationMark < 0 && pending.size() == 0 && channel != null) {
+                    return;
+                }
+                data = pending.toByteArray();
+                mark = rotationMark;
+            }
+            int done = 0;
+            boolean rotated = false;
+            try {
+                if (channel == null) {
+                    // a failed commit closed the segment, or a rotation could not open the next one
+                    openSegment(sequence + 1);
+                }
+                if (mark >= 0) {
+                    write(data, 0, mark);
+                    done = mark;
+                    rotated = true;
+                    sealed = sequence;
+                    closeSegment();
+                    openSegment(sealed + 1);
+                }
+                write(data, done, data.length - done);
+                done = data.length;
+            } catch (IOException e) {
+                failed = true;
+                e.printStackTrace();
+            } finally {
+                synchronized (this) {
+                    drop(done);
+                    if (rotationMark >= 0) {
+                        // a rotation requested while writing still has to be done
+                        rotationMark = rotated && rotationMark == mark ? -1 : rotationMark - done;
+                    }
+                }
+            }
+        }
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        final long start = channel.size();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // a torn batch would end the replay of the segment, the next commit continues in a new one
+            try {
+                channel.truncate(start);
+            } catch (IOException ignored) {
+            }
+            try {
+                closeSegment();
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+    }
+
+    // removes the first bytes of the pending changes
+    private void drop(int count) {
+        if (count == 0) {
+            return;
+        }
+        byte[] rest = pending.toByteArray();
+        pending.reset();
+        pending.write(rest, count, rest.length - count);
+    }
+
+    /**
+     * Checks if a commit failed since the journal was opened. The changes of a failed commit are
+     * written by a later one, but may be missing from the segments sealed in between.
+     *
+     * @return true if a commit failed
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Seals the current segment and continues in a new one. The changes logged so far belong to
+     * the sealed segment; the files are rotated on the executor, so the caller never waits for
+     * the disk.
+     *
+     * @param executor the executor to rotate on, the one committing the journal
+     * @return the sequence of the sealed segment, once it is sealed
+     */
+    public Future<Integer> rotate(ExecutorService executor) {
+        synchronized (this) {
+            rotationMark = pending.size();
+        }
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                synchronized (fileLock) {
+                    commit();
+                    return sealed;
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes sealed segments whose changes are stored in the chunk data
+     *
+     * @param sealed the last sequence to remove
+     */
+    public void release(int sealed) {
+        synchronized (fileLock) {
+            for (File file : segments(directory)) {
+                if (sequenceOf(file) <= sealed && sequenceOf(file) != sequence) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits and closes the journal
+     *
+     * @param delete true to remove all segments, when every change is stored in the chunk data
+     */
+    public void close(boolean delete) {
+        synchronized (fileLock) {
+            commit();
+            try {
+                closeSegment();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (delete) {
+                for (File file : segments(directory)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void openSegment(int sequence) throws IOException {
+        this.segment = new FileOutputStream(new File(directory, PREFIX + sequence + EXTENSION), true);
+        this.channel = segment.getChannel();
+        this.sequence = sequence;
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            try {
+                segment.close();
+            } finally {
+                segment = null;
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Applies the journal segments of a directory to the store and removes them. Chunks are
+     * replayed in parallel, one batch per region of 32x32 chunks.
+     *
+     * @param directory the directory holding the journal segments
+     * @param store     the store to apply the changes to
+     * @param executor  the executor to replay with
+     * @return the amount of replayed changes
+     * @throws IOException thrown if a segment can not be read
+     */
+    public static int replay(File directory, final DurabilityStore store, ExecutorService executor) throws IOException {
+        List<File> segments = segments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        // changes grouped by region and chunk, in the order they were logged
+        Map<String, Map<String, ChunkChanges>> byRegion = new LinkedHashMap<String, Map<String, ChunkChanges>>();
+        int changes = 0;
+        for (File file : segments) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                int op;
+                while ((op = input.read()) != -1) {
+                    Change change = new Change();
+                    change.op = (byte) op;
+                    String world = input.readUTF();
+                    int chunkX, chunkZ;
+                    if (op == CLEAR) {
+                        chunkX = input.readInt();
+                        chunkZ = input.readInt();
+                    } else if (op == ADD || op == TIMER || op == REMOVE) {
+                        change.x = input.readInt();
+                        change.y = input.readInt();
+                        change.z = input.readInt();
+                        if (op != REMOVE) {
+                            change.duraAmount = input.readInt();
+                        }
+                        if (op == TIMER) {
+                            change.duraTime = input.readLong();
+                        }
+                        chunkX = change.x >> 4;
+                        chunkZ = change.z >> 4;
+                    } else {
+                        // unknown data, the rest of the segment can not be trusted
+                        break;
+                    }
+                    String regionKey = ODRRegionCache.fileName(world, ODRRegion.toRegion(chunkX), ODRRegion.toRegion(chunkZ));
+                    Map<String, ChunkChanges> chunks = byRegion.get(regionKey);
+                    if (chunks == null) {
+                        chunks = new LinkedHashMap<String, ChunkChanges>();
+                        byRegion.put(regionKey, chunks);
+                    }
+                    String chunkKey = chunkX + "." + chunkZ;
+                    ChunkChanges chunk = chunks.get(chunkKey);
+                    if (chunk == null) {
+                        chunk = new ChunkChanges(world, chunkX, chunkZ);
+                        chunks.put(chunkKey, chunk);
+                    }
+                    chunk.changes.add(change);
+                    changes++;
+                }
+            } catch (EOFException e) {
+                // torn tail of a segment that was being written during a crash
+            } finally {
+                input.close();
+            }
+        }
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (final Map<String, ChunkChanges> chunks : byRegion.values()) {
+            tasks.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    final String world = chunks.values().iterator().next().world;
+                    long[] keys = new long[chunks.size()];
+                    int i = 0;
+                    for (ChunkChanges chunk : chunks.values()) {
+                        keys[i++] = LongHashSet.chunkKey(chunk.chunkX, chunk.chunkZ);
+                    }
+                    LongObjectMap<byte[]> data = store.getAll(world, keys);
+                    LongObjectMap<byte[]> updated = new LongObjectMap<byte[]>(keys.length);
+                    for (ChunkChanges chunk : chunks.values()) {
+                        final long key = LongHashSet.chunkKey(chunk.chunkX, chunk.chunkZ);
+                        updated.put(key, chunk.apply(data.get(key)));
+                    }
+                    store.putAll(world, updated);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying the journal");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed replaying the journal: " + e.getCause());
+        }
+        store.sync();
+        for (File file : segments) {
+            file.delete();
+        }
+        return changes;
+    }
+
+    private static class Change {
+        private byte op;
+        private int x, y, z;
+        private int duraAmount;
+        private long duraTime;
+    }
+
+    private static class ChunkChanges {
+        private final String world;
+        private final int chunkX, chunkZ;
+        private final List<Change> changes = new ArrayList<Change>();
+
+        private ChunkChanges(String world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private byte[] apply(byte[] data) throws IOException {
+            final Map<Integer, long[]> records = new LinkedHashMap<Integer, long[]>();
+            ODRFile file = new ODRFile();
+            file.prepare(data);
+            file.read(new ODRFile.RecordVisitor() {
+                @Override
+                public void visit(int x, int y, int z, int duraAmount, long duraTime) {
+                    records.put(position(x, y, z), new long[]{x, y, z, duraAmount, duraTime});
+                }
+            });
+            file.close();
+            for (Change change : changes) {
+                switch (change.op) {
+                    case CLEAR:
+                        records.clear();
+                        break;
+                    case REMOVE:
+                        records.remove(position(change.x, change.y, change.z));
+                        break;
+                    default:
+                        records.put(position(change.x, change.y, change.z), new long[]{change.x, change.y, change.z, change.duraAmount, change.duraTime});
+                        break;
+                }
+            }
+            file.prepare(chunkX, chunkZ);
+            file.reserve(records.size());
+            for (long[] record : records.values()) {
+                file.write((int) record[0], (int) record[1], (int) record[2], (int) record[3], record[4]);
+            }
+            data = file.toByteArray();
+            file.close();
+            return data;
+        }
+
+        private static int position(int x, int y, int z) {
+            return (y << 8) | ((z & 15) << 4) | (x & 15);
+        }
+    }
+}
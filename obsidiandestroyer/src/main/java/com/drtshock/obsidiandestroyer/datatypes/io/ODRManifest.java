@@ -0,0 +1,368 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ODRManifest {
+
+    public static final String EXTENSION = ".odm";
+    // present while the manifests may not match the chunk data, see ChunkManager
+    public static final String DIRTY_MARKER = "manifest.dirty";
+    public static final String STORE_TYPE = "manifest.store";
+    private static final String PREFIX = "manifest.";
+    private static final int MAGIC = ('O' << 24) | ('D' << 16) | ('R' << 8) | 'M';
+    private static final int VERSION = 1;
+
+    private final String world;
+    private final LongObjectMap<Entry> chunks;
+    private long records = 0L;
+
+    /**
+     * Creates an empty manifest of the chunks of a world that have durability data
+     *
+     * @param world the world name
+     */
+    public ODRManifest(String world) {
+        this(world, 16);
+    }
+
+    private ODRManifest(String world, int expected) {
+        this.world = world;
+        this.chunks = new LongObjectMap<Entry>(expected);
+    }
+
+    /**
+     * Gets the file name of the manifest of a world
+     *
+     * @param world the world name
+     * @return the manifest file name
+     */
+    public static String fileName(String world) {
+        return PREFIX + world + EXTENSION;
+    }
+
+    /**
+     * Gets the world name
+     *
+     * @return the world name
+     */
+    public String getWorld() {
+        return world;
+    }
+
+    /**
+     * Checks if a chunk has durability data
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the chunk is listed
+     */
+    public boolean contains(int chunkX, int chunkZ) {
+        return chunks.containsKey(LongHashSet.chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Lists a chunk, or updates its listing
+     *
+     * @param chunkX    the chunk x coordinate
+     * @param chunkZ    the chunk z coordinate
+     * @param records   the amount of records of the chunk
+     * @param maxExpiry the latest durability reset time of the chunk
+     */
+    public void put(int chunkX, int chunkZ, int records, long maxExpiry) {
+        final long key = LongHashSet.chunkKey(chunkX, chunkZ);
+        Entry entry = chunks.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            chunks.put(key, entry);
+        }
+        this.records += records - entry.records;
+        entry.records = records;
+        entry.maxExpiry = maxExpiry;
+    }
+
+    /**
+     * Removes the listing of a chunk
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    public void remove(int chunkX, int chunkZ) {
+        Entry entry = chunks.remove(LongHashSet.chunkKey(chunkX, chunkZ));
+        if (entry != null) {
+            this.records -= entry.records;
+        }
+    }
+
+    /**
+     * Gets the amount of records of a chunk
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the amount of records, or 0 if the chunk is not listed
+     */
+    public int getRecords(int chunkX, int chunkZ) {
+        Entry entry = chunks.get(LongHashSet.chunkKey(chunkX, chunkZ));
+        return entry != null ? entry.records : 0;
+    }
+
+    /**
+     * Gets the latest durability reset time of a chunk
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the latest reset time, or 0 if the chunk is not listed
+     */
+    public long getMaxExpiry(int chunkX, int chunkZ) {
+        Entry entry = chunks.get(LongHashSet.chunkKey(chunkX, chunkZ));
+        return entry != null ? entry.maxExpiry : 0L;
+    }
+
+    /**
+     * Gets the amount of listed chunks
+     *
+     * @return the amount of chunks with durability data
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the amount of records of all listed chunks
+     *
+     * @return the amount of stored durabilities
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Gets the listed chunks
+     *
+     * @return packed chunk coordinates, see {@link LongHashSet#chunkKey(int, int)}
+     */
+    public long[] getChunks() {
+        return chunks.keys();
+    }
+
+    /**
+     * Removes all listings
+     */
+    public void clear() {
+        chunks.clear();
+        records = 0L;
+    }
+
+    /**
+     * Copies the manifest, so it can be written while this one keeps changing
+     *
+     * @return the copy
+     */
+    public ODRManifest copy() {
+        ODRManifest copy = new ODRManifest(world, chunks.size());
+        for (long key : chunks.keys()) {
+            Entry entry = chunks.get(key);
+            copy.put(LongHashSet.chunkX(key), LongHashSet.chunkZ(key), entry.records, entry.maxExpiry);
+        }
+        return copy;
+    }
+
+    /**
+     * Writes the manifest into a directory, replacing the previous one at once. An empty manifest
+     * removes the file.
+     *
+     * @param directory the directory to write to
+     * @throws IOException thrown if the manifest can not be written
+     */
+    public void write(File directory) throws IOException {
+        File file = new File(directory, fileName(world));
+        if (chunks.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to remove " + file.getName());
+            }
+            return;
+        }
+        File temp = new File(directory, fileName(world) + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(chunks.size());
+            for (long key : chunks.keys()) {
+                Entry entry = chunks.get(key);
+                output.writeInt(LongHashSet.chunkX(key));
+                output.writeInt(LongHashSet.chunkZ(key));
+                output.writeInt(entry.records);
+                output.writeLong(entry.maxExpiry);
+            }
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(file)) {
+            // renaming over an existing file fails on some platforms
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to replace " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Reads the manifest of a world
+     *
+     * @param file  the manifest file
+     * @param world the world name
+     * @return the manifest
+     * @throws IOException thrown if the manifest can not be read or is invalid
+     */
+    public static ODRManifest read(File file, String world) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Invalid manifest " + file.getName());
+            }
+            final int size = input.readInt();
+            ODRManifest manifest = new ODRManifest(world, size);
+            for (int i = 0; i < size; i++) {
+                final int chunkX = input.readInt();
+                final int chunkZ = input.readInt();
+                final int records = input.readInt();
+                manifest.put(chunkX, chunkZ, records, input.readLong());
+            }
+            return manifest;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Reads the manifest of a world from a directory that holds the chunks of that world only
+     *
+     * @param directory   the directory holding the manifest and region files
+     * @param world       the world name
+     * @param regionFiles true if the chunks are stored in region files, which then must all be listed
+     * @return the manifest, or null if there are region files but no manifest
+     * @throws IOException thrown if the manifest can not be read
+     */
+    public static ODRManifest read(File directory, String world, boolean regionFiles) throws IOException {
+        File file = new File(directory, fileName(world));
+        if (file.exists()) {
+            return read(file, world);
+        }
+        File[] files = directory.listFiles();
+        if (regionFiles && files != null) {
+            for (File regionFile : files) {
+                if (regionFile.getName().startsWith("r.") && regionFile.getName().endsWith(ODRRegionCache.EXTENSION)) {
+                    return null;
+                }
+            }
+        }
+        return new ODRManifest(world);
+    }
+
+    /**
+     * Removes the manifests of every world in a directory
+     *
+     * @param directory the directory holding the manifests
+     * @throws IOException thrown if a manifest can not be removed
+     */
+    public static void deleteAll(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(PREFIX) && file.getName().endsWith(EXTENSION) && !file.delete()) {
+                throw new IOException("Failed to remove " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Builds the manifests of every world from the chunk data of a store
+     *
+     * @param store the store
+     * @return the manifests per world name
+     * @throws IOException thrown if the store can not be read
+     */
+    public static Map<String, ODRManifest> rebuild(DurabilityStore store) throws IOException {
+        Map<String, ODRManifest> manifests = new HashMap<String, ODRManifest>();
+        ODRFile file = new ODRFile();
+        for (Map.Entry<String, LongHashSet> stored : store.getStoredChunks().entrySet()) {
+            ODRManifest manifest = new ODRManifest(stored.getKey(), stored.getValue().size());
+            for (long key : stored.getValue().toArray()) {
+                final int chunkX = LongHashSet.chunkX(key);
+                final int chunkZ = LongHashSet.chunkZ(key);
+                final long[] maxExpiry = new long[1];
+                file.prepare(store, stored.getKey(), chunkX, chunkZ, false);
+                final int records = file.read(new ODRFile.RecordVisitor() {
+                    @Override
+                    public void visit(int x, int y, int z, int duraAmount, long duraTime) {
+                        maxExpiry[0] = Math.max(maxExpiry[0], duraTime);
+                    }
+                });
+                file.close();
+                if (records > 0) {
+                    manifest.put(chunkX, chunkZ, records, maxExpiry[0]);
+                }
+            }
+            manifests.put(stored.getKey(), manifest);
+        }
+        return manifests;
+    }
+
+    /**
+     * Gets the type of the store the manifests of a directory were built from
+     *
+     * @param directory the directory holding the manifests
+     * @return the store type name, or null if it can not be read
+     */
+    public static String readStoreType(File directory) {
+        File file = new File(directory, STORE_TYPE);
+        if (!file.exists()) {
+            // manifests written before the store type was recorded belong to region files
+            return StoreType.REGION.name();
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line = reader.readLine();
+                return line != null ? line.trim() : null;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Records the type of the store the manifests of a directory were built from
+     *
+     * @param directory the directory holding the manifests
+     * @param type      the store type name
+     */
+    public static void writeStoreType(File directory, String type) {
+        try {
+            FileWriter writer = new FileWriter(new File(directory, STORE_TYPE));
+            try {
+                writer.write(type);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Entry {
+        private int records;
+        private long maxExpiry;
+    }
+}
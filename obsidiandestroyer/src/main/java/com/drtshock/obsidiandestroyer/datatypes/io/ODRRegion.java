@@ -0,0 +1,347 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class ODRRegion {
+
+    public static final int CHUNKS = 32;
+    private static final int ENTRIES = CHUNKS * CHUNKS;
+    private static final int SECTOR_SIZE = 256;
+    private static final int HEADER_SECTORS = (ENTRIES * 8) / SECTOR_SIZE;
+
+    private final File file;
+    private final int[] offsets = new int[ENTRIES];
+    private final int[] lengths = new int[ENTRIES];
+    private final BitSet sectors = new BitSet();
+    private RandomAccessFile access;
+    private boolean headerLoaded = false;
+    // set if the file was written since it was last forced to disk
+    private boolean dirty = false;
+    private int count = 0;
+
+    /**
+     * Creates a region container for 32x32 chunks
+     *
+     * @param file the region file, created on the first write
+     */
+    public ODRRegion(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the region coordinate of a chunk coordinate
+     *
+     * @param chunk the chunk coordinate
+     * @return the region coordinate
+     */
+    public static int toRegion(int chunk) {
+        return chunk >> 5;
+    }
+
+    /**
+     * Groups chunks by the region holding them
+     *
+     * @param chunks the packed chunk coordinates
+     * @return one batch of packed chunk coordinates per region
+     */
+    public static List<long[]> batches(long[] chunks) {
+        LongObjectMap<LongHashSet> regions = new LongObjectMap<LongHashSet>();
+        for (long chunk : chunks) {
+            final long region = LongHashSet.chunkKey(toRegion(LongHashSet.chunkX(chunk)), toRegion(LongHashSet.chunkZ(chunk)));
+            LongHashSet regionChunks = regions.get(region);
+            if (regionChunks == null) {
+                regionChunks = new LongHashSet();
+                regions.put(region, regionChunks);
+            }
+            regionChunks.add(chunk);
+        }
+        List<long[]> batches = new ArrayList<long[]>(regions.size());
+        for (LongHashSet regionChunks : regions.values()) {
+            batches.add(regionChunks.toArray());
+        }
+        return batches;
+    }
+
+    private static int index(int chunkX, int chunkZ) {
+        return (chunkX & (CHUNKS - 1)) + ((chunkZ & (CHUNKS - 1)) * CHUNKS);
+    }
+
+    private static int sectorsFor(int length) {
+        return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    /**
+     * Gets the file backing this region
+     *
+     * @return the region file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks if the region holds data for a chunk
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the chunk has a slot in this region
+     * @throws IOException thrown if the header can not be read
+     */
+    public synchronized boolean contains(int chunkX, int chunkZ) throws IOException {
+        return open() && lengths[index(chunkX, chunkZ)] > 0;
+    }
+
+    /**
+     * Gets the amount of chunks stored in the region
+     *
+     * @return the amount of used slots
+     * @throws IOException thrown if the header can not be read
+     */
+    public synchronized int size() throws IOException {
+        return open() ? count : 0;
+    }
+
+    /**
+     * Gets the slots of the chunks stored in the region. The slot of a chunk is
+     * (chunkX &amp; 31) + (chunkZ &amp; 31) * 32.
+     *
+     * @return the used slots
+     * @throws IOException thrown if the header can not be read
+     */
+    public synchronized int[] getSlots() throws IOException {
+        if (!open()) {
+            return new int[0];
+        }
+        int[] slots = new int[count];
+        int i = 0;
+        for (int index = 0; index < ENTRIES && i < slots.length; index++) {
+            if (lengths[index] > 0) {
+                slots[i++] = index;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Reads the slot of a chunk
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the slot data, or null if the chunk has no slot
+     * @throws IOException thrown if something happens
+     */
+    public synchronized byte[] read(int chunkX, int chunkZ) throws IOException {
+        if (!open()) {
+            return null;
+        }
+        final int index = index(chunkX, chunkZ);
+        if (lengths[index] <= 0) {
+            return null;
+        }
+        byte[] data = new byte[lengths[index]];
+        access.seek((long) offsets[index] * SECTOR_SIZE);
+        access.readFully(data);
+        return data;
+    }
+
+    /**
+     * Writes the slot of a chunk. The data goes into free sectors and the header entry is switched
+     * to them afterwards, so a write that is cut short leaves the previous slot intact.
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @param data   the data to write
+     * @param length the amount of bytes of data to write
+     * @throws IOException thrown if something happens
+     */
+    public synchronized void write(int chunkX, int chunkZ, byte[] data, int length) throws IOException {
+        if (length <= 0) {
+            delete(chunkX, chunkZ);
+            return;
+        }
+        if (!open()) {
+            create();
+        }
+        final int index = index(chunkX, chunkZ);
+        final int needed = sectorsFor(length);
+        final int previous = offsets[index];
+        final int current = sectorsFor(lengths[index]);
+        // the current slot stays allocated until the header points at the new one
+        final int offset = allocate(needed);
+        sectors.set(offset, offset + needed);
+        access.seek((long) offset * SECTOR_SIZE);
+        access.write(data, 0, length);
+        dirty = true;
+        if (current <= 0) {
+            count++;
+        }
+        setEntry(index, offset, length);
+        if (current > 0) {
+            sectors.clear(previous, previous + current);
+        }
+        trim();
+    }
+
+    /**
+     * Removes the slot of a chunk, deleting the region file once it is empty
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @throws IOException thrown if something happens
+     */
+    public synchronized void delete(int chunkX, int chunkZ) throws IOException {
+        if (!open()) {
+            return;
+        }
+        final int index = index(chunkX, chunkZ);
+        if (lengths[index] <= 0) {
+            return;
+        }
+        sectors.clear(offsets[index], offsets[index] + sectorsFor(lengths[index]));
+        setEntry(index, 0, 0);
+        count--;
+        if (count <= 0) {
+            delete();
+        } else {
+            trim();
+        }
+    }
+
+    /**
+     * Deletes the region file and all of its slots
+     *
+     * @return true if the file is gone
+     */
+    public synchronized boolean delete() {
+        dirty = false;
+        close();
+        reset();
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Forces the changes of the region to disk
+     *
+     * @throws IOException thrown if something happens
+     */
+    public synchronized void sync() throws IOException {
+        if (access != null && dirty) {
+            access.getFD().sync();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Releases the file handle of the region, forcing its changes to disk first. The region
+     * reopens itself and reads its header again when used again.
+     */
+    public synchronized void close() {
+        if (access != null) {
+            try {
+                sync();
+                access.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            access = null;
+        }
+        headerLoaded = false;
+    }
+
+    private boolean open() throws IOException {
+        if (access != null) {
+            return true;
+        }
+        if (!file.exists()) {
+            reset();
+            return false;
+        }
+        access = new RandomAccessFile(file, "rw");
+        if (!headerLoaded) {
+            readHeader();
+        }
+        return true;
+    }
+
+    private void create() throws IOException {
+        reset();
+        access = new RandomAccessFile(file, "rw");
+        access.setLength((long) HEADER_SECTORS * SECTOR_SIZE);
+        headerLoaded = true;
+    }
+
+    private void reset() {
+        for (int i = 0; i < ENTRIES; i++) {
+            offsets[i] = 0;
+            lengths[i] = 0;
+        }
+        sectors.clear();
+        sectors.set(0, HEADER_SECTORS);
+        count = 0;
+        headerLoaded = false;
+    }
+
+    private void readHeader() throws IOException {
+        reset();
+        final long fileLength = access.length();
+        if (fileLength < (long) HEADER_SECTORS * SECTOR_SIZE) {
+            access.setLength((long) HEADER_SECTORS * SECTOR_SIZE);
+            headerLoaded = true;
+            return;
+        }
+        byte[] header = new byte[ENTRIES * 8];
+        access.seek(0);
+        access.readFully(header);
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        for (int i = 0; i < ENTRIES; i++) {
+            int offset = buffer.getInt();
+            int length = buffer.getInt();
+            // ignore slots that point outside of the file or into the header
+            if (length <= 0 || offset < HEADER_SECTORS || (long) offset * SECTOR_SIZE + length > fileLength) {
+                continue;
+            }
+            offsets[i] = offset;
+            lengths[i] = length;
+            sectors.set(offset, offset + sectorsFor(length));
+            count++;
+        }
+        headerLoaded = true;
+    }
+
+    private int allocate(int needed) {
+        int start = HEADER_SECTORS;
+        while (true) {
+            int free = sectors.nextClearBit(start);
+            int used = sectors.nextSetBit(free);
+            if (used < 0 || used - free >= needed) {
+                return free;
+            }
+            start = used;
+        }
+    }
+
+    private void setEntry(int index, int offset, int length) throws IOException {
+        offsets[index] = offset;
+        lengths[index] = length;
+        dirty = true;
+        // one write, so the offset and length of an entry are never torn apart
+        access.seek((long) index * 8);
+        access.write(ByteBuffer.allocate(8).putInt(offset).putInt(length).array());
+    }
+
+    private void trim() throws IOException {
+        final long end = (long) Math.max(HEADER_SECTORS, sectors.length()) * SECTOR_SIZE;
+        if (access.length() != end) {
+            access.setLength(end);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ODRRegionCache {
+
+    public static final String EXTENSION = ".odrr";
+
+    private final File directory;
+    private final int maxOpen;
+    // set if the directory holds the regions of a single world
+    private final String world;
+    // open regions in the order they were used, evicted regions are dropped and read again on their next use
+    private final LinkedHashMap<String, ODRRegion> open = new LinkedHashMap<String, ODRRegion>(16, 0.75F, true);
+
+    /**
+     * Keeps track of the region files in a directory
+     *
+     * @param directory the directory holding the region files
+     * @param maxOpen   the amount of region file handles kept open at once
+     */
+    public ODRRegionCache(File directory, int maxOpen) {
+        this(directory, maxOpen, null);
+    }
+
+    /**
+     * Keeps track of the region files of a single world in a directory. The file names do not
+     * contain the world name then.
+     *
+     * @param directory the directory holding the region files
+     * @param maxOpen   the amount of region file handles kept open at once
+     * @param world     the world name, or null if the directory holds the regions of every world
+     */
+    public ODRRegionCache(File directory, int maxOpen, String world) {
+        this.directory = directory;
+        this.maxOpen = Math.max(1, maxOpen);
+        this.world = world;
+    }
+
+    /**
+     * Gets the file name of a region
+     *
+     * @param world   the world name
+     * @param regionX the region x coordinate
+     * @param regionZ the region z coordinate
+     * @return the region file name
+     */
+    public static String fileName(String world, int regionX, int regionZ) {
+        return "r." + regionX + "." + regionZ + "." + world + EXTENSION;
+    }
+
+    /**
+     * Gets the file name of a region in a directory of a single world
+     *
+     * @param regionX the region x coordinate
+     * @param regionZ the region z coordinate
+     * @return the region file name
+     */
+    public static String fileName(int regionX, int regionZ) {
+        return "r." + regionX + "." + regionZ + EXTENSION;
+    }
+
+    private String name(String world, int regionX, int regionZ) {
+        return this.world != null ? fileName(regionX, regionZ) : fileName(world, regionX, regionZ);
+    }
+
+    /**
+     * Gets the region holding a chunk
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the region of the chunk
+     */
+    public synchronized ODRRegion get(String world, int chunkX, int chunkZ) {
+        final String name = name(world, ODRRegion.toRegion(chunkX), ODRRegion.toRegion(chunkZ));
+        ODRRegion region = open.get(name);
+        if (region == null) {
+            region = new ODRRegion(new File(directory, name));
+            open.put(name, region);
+        }
+        if (open.size() > maxOpen) {
+            Iterator<ODRRegion> iterator = open.values().iterator();
+            ODRRegion eldest = iterator.next();
+            iterator.remove();
+            eldest.close();
+        }
+        return region;
+    }
+
+    /**
+     * Lists the chunks stored in every region file of the directory
+     *
+     * @return set of packed chunk coordinates per world name
+     */
+    public synchronized Map<String, LongHashSet> getStoredChunks() {
+        Map<String, LongHashSet> stored = new HashMap<String, LongHashSet>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return stored;
+        }
+        for (File file : files) {
+            final String name = file.getName();
+            if (!name.startsWith("r.") || !name.endsWith(EXTENSION)) {
+                continue;
+            }
+            // world names may contain dots, only split off the region coordinates
+            String[] parts = name.substring(2, name.length() - EXTENSION.length()).split("\\.", world != null ? 2 : 3);
+            if (parts.length < (world != null ? 2 : 3)) {
+                continue;
+            }
+            final String regionWorld = world != null ? world : parts[2];
+            try {
+                final int regionX = Integer.parseInt(parts[0]);
+                final int regionZ = Integer.parseInt(parts[1]);
+                ODRRegion region = get(regionWorld, regionX * ODRRegion.CHUNKS, regionZ * ODRRegion.CHUNKS);
+                LongHashSet chunks = stored.get(regionWorld);
+                if (chunks == null) {
+                    chunks = new LongHashSet();
+                    stored.put(regionWorld, chunks);
+                }
+                for (int slot : region.getSlots()) {
+                    chunks.add(LongHashSet.chunkKey(regionX * ODRRegion.CHUNKS + (slot & (ODRRegion.CHUNKS - 1)), regionZ * ODRRegion.CHUNKS + slot / ODRRegion.CHUNKS));
+                }
+            } catch (NumberFormatException e) {
+                // not a region file
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Forces the changes of the open regions to disk. Evicted regions are forced when closed.
+     *
+     * @throws IOException thrown if a region can not be forced
+     */
+    public synchronized void sync() throws IOException {
+        for (ODRRegion region : open.values()) {
+            region.sync();
+        }
+    }
+
+    /**
+     * Releases all open region file handles and drops the regions
+     */
+    public synchronized void close() {
+        for (ODRRegion region : open.values()) {
+            region.close();
+        }
+        open.clear();
+    }
+
+    /**
+     * Deletes a region file and all of its slots
+     *
+     * @param world   the world name
+     * @param regionX the region x coordinate
+     * @param regionZ the region z coordinate
+     * @return true if the file is gone
+     */
+    public synchronized boolean delete(String world, int regionX, int regionZ) {
+        final String name = name(world, regionX, regionZ);
+        ODRRegion region = open.remove(name);
+        if (region == null) {
+            region = new ODRRegion(new File(directory, name));
+        }
+        return region.delete();
+    }
+}
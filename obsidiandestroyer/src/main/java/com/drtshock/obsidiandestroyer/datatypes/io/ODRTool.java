@@ -0,0 +1,286 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains a durability directory while the server is stopped. Runs without Bukkit, so it only
+ * uses the data classes of this package:
+ *
+ * <pre>
+ * java -jar ObsidianDestroyer.jar compact &lt;directory&gt; [store] [threads]
+ * java -jar ObsidianDestroyer.jar convert &lt;directory&gt; &lt;from&gt; &lt;to&gt; [threads]
+ * </pre>
+ *
+ * The directory is the durability directory of the plugin; every world directory in it is processed
+ * on its own. A directory without world directories is processed as one store of every world, as
+ * written before the durabilities were split up per world.
+ *
+ * Both commands first apply legacy chunk files, the journal and emergency files, then rewrite every
+ * chunk without the durabilities that are used up or whose reset timer ended. Block types are not
+ * known offline, so with regeneration enabled an ended timer only drops the last point of damage.
+ * The SQLite store needs the driver on the class path, e.g. the server jar.
+ */
+public class ODRTool {
+
+    private final File directory;
+    private final String worldName;
+    private final boolean regenerate;
+    private final long now = System.currentTimeMillis();
+    private final AtomicLong chunksRead = new AtomicLong();
+    private final AtomicLong chunksRemoved = new AtomicLong();
+    private final AtomicLong recordsKept = new AtomicLong();
+    private final AtomicLong recordsDropped = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final Map<String, ODRManifest> manifests = new HashMap<String, ODRManifest>();
+
+    /**
+     * Creates a tool for a durability directory
+     *
+     * @param directory  the durability directory
+     * @param world      the world of the directory, or null if it holds the chunks of every world
+     * @param regenerate true if materials regenerate over time instead of resetting at once
+     */
+    public ODRTool(File directory, String world, boolean regenerate) {
+        this.directory = directory;
+        this.worldName = world;
+        this.regenerate = regenerate;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equalsIgnoreCase("compact") || args[0].equalsIgnoreCase("convert"))) {
+            usage();
+            return;
+        }
+        File directory = new File(args[1]);
+        if (!directory.isDirectory()) {
+            System.err.println("Not a directory: " + directory);
+            System.exit(1);
+        }
+        final boolean convert = args[0].equalsIgnoreCase("convert");
+        try {
+            StoreType from = parseType(args.length > 2 ? args[2] : "REGION");
+            StoreType to = convert ? parseType(args.length > 3 ? args[3] : null) : from;
+            int threadsArg = convert ? 4 : 3;
+            int threads = args.length > threadsArg ? Integer.parseInt(args[threadsArg]) : Runtime.getRuntime().availableProcessors();
+            boolean regenerate = Boolean.getBoolean("regenerate");
+            File[] worlds = directory.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.isDirectory();
+                }
+            });
+            if (worlds == null || worlds.length == 0) {
+                new ODRTool(directory, null, regenerate).run(from, to, Math.max(1, threads));
+                return;
+            }
+            for (File world : worlds) {
+                System.out.println("World directory: " + world.getName());
+                new ODRTool(world, world.getName(), regenerate).run(from, to, Math.max(1, threads));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: (the server must be stopped)");
+        System.out.println("  compact <directory> [REGION|SQLITE] [threads]");
+        System.out.println("  convert <directory> <REGION|SQLITE> <REGION|SQLITE> [threads]");
+        System.out.println("Add -Dregenerate=true when materials regenerate over time.");
+    }
+
+    private static StoreType parseType(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Missing store type");
+        }
+        try {
+            return StoreType.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown store type " + name);
+        }
+    }
+
+    private DurabilityStore open(StoreType type) throws IOException {
+        if (type == StoreType.SQLITE) {
+            return new SQLiteDurabilityStore(directory);
+        }
+        return worldName != null ? new RegionDurabilityStore(directory, 256, worldName) : new RegionDurabilityStore(directory, 256);
+    }
+
+    /**
+     * Compacts the chunks of a store, or moves them into a store of another type
+     *
+     * @param from    the type of the store to read
+     * @param to      the type of the store to write
+     * @param threads the amount of threads to process regions with
+     * @throws IOException thrown if a store can not be used
+     */
+    public void run(StoreType from, final StoreType to, int threads) throws IOException {
+        final long time = System.currentTimeMillis();
+        final DurabilityStore source = open(from);
+        final DurabilityStore target;
+        try {
+            target = from == to ? source : open(to);
+        } catch (IOException e) {
+            source.close();
+            throw e;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            recover(source, executor);
+            Map<String, LongHashSet> stored = source.getStoredChunks();
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (Map.Entry<String, LongHashSet> world : stored.entrySet()) {
+                final String name = world.getKey();
+                manifests.put(name, new ODRManifest(name));
+                for (final long[] region : ODRRegion.batches(world.getValue().toArray())) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            process(name, region, source, target);
+                            return null;
+                        }
+                    });
+                }
+            }
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+            if (source != target) {
+                for (Map.Entry<String, LongHashSet> world : stored.entrySet()) {
+                    source.deleteAll(world.getKey(), world.getValue().toArray());
+                }
+                source.compact();
+            }
+            target.compact();
+            ODRManifest.deleteAll(directory);
+            for (ODRManifest manifest : manifests.values()) {
+                manifest.write(directory);
+            }
+            ODRManifest.writeStoreType(directory, to.name());
+            new File(directory, ODRManifest.DIRTY_MARKER).delete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed processing a region", e.getCause());
+        } finally {
+            executor.shutdown();
+            source.close();
+            target.close();
+        }
+
+        System.out.println("Worlds: " + manifests.size());
+        System.out.println("Chunks read: " + chunksRead.get() + ", removed: " + chunksRemoved.get());
+        System.out.println("Durabilities kept: " + recordsKept.get() + ", dropped: " + recordsDropped.get());
+        System.out.println("Bytes read: " + bytesRead.get() + ", written: " + bytesWritten.get());
+        System.out.println("Done in " + (System.currentTimeMillis() - time) + " ms." + (from != to ? " Set Persistence.Store to " + to.name() + " in config.yml." : ""));
+    }
+
+    /**
+     * Applies everything that was not written into the store when the server stopped
+     */
+    private void recover(DurabilityStore store, ExecutorService executor) throws IOException {
+        if (ODRConverter.hasLegacyFiles(directory)) {
+            ODRConverter converter = new ODRConverter(directory, store);
+            System.out.println("Converted legacy chunk files: " + converter.convert());
+            for (String name : converter.getFailed()) {
+                System.out.println("Failed to convert file " + name);
+            }
+        }
+        if (!ODRJournal.segments(directory).isEmpty()) {
+            System.out.println("Replayed journal changes: " + ODRJournal.replay(directory, store, executor));
+        }
+        if (!ODRArchive.emergencyFiles(directory).isEmpty()) {
+            System.out.println("Applied emergency chunks: " + ODRArchive.applyEmergencyFiles(directory, store));
+        }
+    }
+
+    /**
+     * Rewrites the chunks of a region without the durabilities that are not worth keeping
+     */
+    private void process(String world, long[] chunks, DurabilityStore source, DurabilityStore target) throws IOException {
+        LongObjectMap<byte[]> data = source.getAll(world, chunks);
+        LongObjectMap<byte[]> result = new LongObjectMap<byte[]>(data.size());
+        ODRFile reader = new ODRFile();
+        for (long chunk : data.keys()) {
+            final byte[] chunkData = data.get(chunk);
+            final int chunkX = LongHashSet.chunkX(chunk);
+            final int chunkZ = LongHashSet.chunkZ(chunk);
+            final List<long[]> kept = new ArrayList<long[]>();
+            reader.prepare(chunkData);
+            final int records = reader.read(new ODRFile.RecordVisitor() {
+                @Override
+                public void visit(int x, int y, int z, int duraAmount, long duraTime) {
+                    if (isWorthKeeping(duraAmount, duraTime)) {
+                        kept.add(new long[]{x, y, z, duraAmount, duraTime});
+                    }
+                }
+            });
+            reader.close();
+            chunksRead.incrementAndGet();
+            bytesRead.addAndGet(chunkData.length);
+            recordsKept.addAndGet(kept.size());
+            recordsDropped.addAndGet(records - kept.size());
+            if (kept.isEmpty()) {
+                chunksRemoved.incrementAndGet();
+                result.put(chunk, new byte[0]);
+                continue;
+            }
+            ODRFile writer = new ODRFile();
+            writer.prepare(chunkX, chunkZ);
+            writer.reserve(kept.size());
+            long maxExpiry = 0L;
+            for (long[] record : kept) {
+                writer.write((int) record[0], (int) record[1], (int) record[2], (int) record[3], record[4]);
+                maxExpiry = Math.max(maxExpiry, record[4]);
+            }
+            byte[] encoded = writer.toByteArray();
+            bytesWritten.addAndGet(encoded.length);
+            result.put(chunk, encoded);
+            ODRManifest manifest = manifests.get(world);
+            synchronized (manifest) {
+                manifest.put(chunkX, chunkZ, kept.size(), maxExpiry);
+            }
+        }
+        target.putAll(world, result);
+    }
+
+    /**
+     * Checks if a durability would still be there once its block is checked by the plugin
+     *
+     * @param duraAmount the durability amount
+     * @param duraTime   the durability reset time, 0 if there is none
+     * @return true if the durability has to be kept
+     */
+    private boolean isWorthKeeping(int duraAmount, long duraTime) {
+        if (duraAmount <= 0) {
+            return false;
+        }
+        if (duraTime <= 0L || duraTime >= now) {
+            return true;
+        }
+        // an ended timer regenerates at least one point of damage
+        return regenerate && duraAmount > 1;
+    }
+}
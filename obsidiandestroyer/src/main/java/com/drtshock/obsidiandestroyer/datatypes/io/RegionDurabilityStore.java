@@ -0,0 +1,99 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Stores chunk data in region files of 32x32 chunks, see {@link ODRRegion}
+ */
+public class RegionDurabilityStore implements DurabilityStore {
+
+    private final ODRRegionCache regions;
+
+    /**
+     * Creates a store of the region files in a directory
+     *
+     * @param directory the directory holding the region files
+     * @param maxOpen   the amount of region file handles kept open at once
+     */
+    public RegionDurabilityStore(File directory, int maxOpen) {
+        this.regions = new ODRRegionCache(directory, maxOpen);
+    }
+
+    /**
+     * Creates a store of the region files of a single world in a directory
+     *
+     * @param directory the directory holding the region files
+     * @param maxOpen   the amount of region file handles kept open at once
+     * @param world     the world name
+     */
+    public RegionDurabilityStore(File directory, int maxOpen, String world) {
+        this.regions = new ODRRegionCache(directory, maxOpen, world);
+    }
+
+    @Override
+    public byte[] get(String world, int chunkX, int chunkZ) throws IOException {
+        return regions.get(world, chunkX, chunkZ).read(chunkX, chunkZ);
+    }
+
+    @Override
+    public void put(String world, int chunkX, int chunkZ, byte[] data, int length) throws IOException {
+        regions.get(world, chunkX, chunkZ).write(chunkX, chunkZ, data, length);
+    }
+
+    @Override
+    public void delete(String world, int chunkX, int chunkZ) throws IOException {
+        regions.get(world, chunkX, chunkZ).delete(chunkX, chunkZ);
+    }
+
+    @Override
+    public LongObjectMap<byte[]> getAll(String world, long[] chunks) throws IOException {
+        LongObjectMap<byte[]> data = new LongObjectMap<byte[]>(chunks.length);
+        for (long chunk : chunks) {
+            byte[] chunkData = get(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+            if (chunkData != null) {
+                data.put(chunk, chunkData);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void putAll(String world, LongObjectMap<byte[]> data) throws IOException {
+        for (long chunk : data.keys()) {
+            byte[] chunkData = data.get(chunk);
+            put(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk), chunkData, chunkData.length);
+        }
+    }
+
+    @Override
+    public void deleteAll(String world, long[] chunks) throws IOException {
+        for (long chunk : chunks) {
+            delete(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+        }
+    }
+
+    @Override
+    public Map<String, LongHashSet> getStoredChunks() {
+        return regions.getStoredChunks();
+    }
+
+    @Override
+    public void compact() {
+        // slots are reused and files trimmed on every write
+    }
+
+    @Override
+    public void sync() throws IOException {
+        regions.sync();
+    }
+
+    @Override
+    public void close() {
+        regions.close();
+    }
+}
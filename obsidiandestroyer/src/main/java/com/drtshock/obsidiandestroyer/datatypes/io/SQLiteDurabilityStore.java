@@ -0,0 +1,262 @@
+package com.drtshock.obsidiandestroyer.datatypes.io;
+
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores chunk data in a single embedded SQLite database file. The driver ships with the server.
+ */
+public class SQLiteDurabilityStore implements DurabilityStore {
+
+    public static final String FILE_NAME = "durabilities.db";
+
+    private final File file;
+    private Connection connection;
+    private PreparedStatement select, insert, remove;
+
+    /**
+     * Creates a store in the database file of a directory
+     *
+     * @param directory the directory holding the database file
+     * @throws IOException thrown if the driver is missing or the database can not be opened
+     */
+    public SQLiteDurabilityStore(File directory) throws IOException {
+        this.file = new File(directory, FILE_NAME);
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("SQLite driver not found", e);
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        if (connection != null) {
+            return;
+        }
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA cache_size=4000");
+                statement.execute("CREATE TABLE IF NOT EXISTS durabilities (world TEXT NOT NULL, x INTEGER NOT NULL, z INTEGER NOT NULL, data BLOB NOT NULL, PRIMARY KEY (world, x, z))");
+            } finally {
+                statement.close();
+            }
+            select = connection.prepareStatement("SELECT data FROM durabilities WHERE world = ? AND x = ? AND z = ?");
+            insert = connection.prepareStatement("INSERT OR REPLACE INTO durabilities (world, x, z, data) VALUES (?, ?, ?, ?)");
+            remove = connection.prepareStatement("DELETE FROM durabilities WHERE world = ? AND x = ? AND z = ?");
+        } catch (SQLException e) {
+            close();
+            throw new IOException("Failed opening " + file.getName(), e);
+        }
+    }
+
+    @Override
+    public synchronized byte[] get(String world, int chunkX, int chunkZ) throws IOException {
+        open();
+        try {
+            return select(world, chunkX, chunkZ);
+        } catch (SQLException e) {
+            throw new IOException("Failed reading chunk " + chunkX + "," + chunkZ, e);
+        }
+    }
+
+    @Override
+    public synchronized void put(String world, int chunkX, int chunkZ, byte[] data, int length) throws IOException {
+        open();
+        try {
+            insert(world, chunkX, chunkZ, data, length);
+        } catch (SQLException e) {
+            throw new IOException("Failed writing chunk " + chunkX + "," + chunkZ, e);
+        }
+    }
+
+    @Override
+    public synchronized void delete(String world, int chunkX, int chunkZ) throws IOException {
+        open();
+        try {
+            remove(world, chunkX, chunkZ);
+        } catch (SQLException e) {
+            throw new IOException("Failed removing chunk " + chunkX + "," + chunkZ, e);
+        }
+    }
+
+    @Override
+    public synchronized LongObjectMap<byte[]> getAll(String world, long[] chunks) throws IOException {
+        open();
+        LongObjectMap<byte[]> data = new LongObjectMap<byte[]>(chunks.length);
+        try {
+            for (long chunk : chunks) {
+                byte[] chunkData = select(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+                if (chunkData != null) {
+                    data.put(chunk, chunkData);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed reading chunks", e);
+        }
+        return data;
+    }
+
+    @Override
+    public synchronized void putAll(String world, LongObjectMap<byte[]> data) throws IOException {
+        open();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (long chunk : data.keys()) {
+                    byte[] chunkData = data.get(chunk);
+                    insert(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk), chunkData, chunkData.length);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed writing chunks", e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll(String world, long[] chunks) throws IOException {
+        open();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (long chunk : chunks) {
+                    remove(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed removing chunks", e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, LongHashSet> getStoredChunks() throws IOException {
+        open();
+        Map<String, LongHashSet> stored = new HashMap<String, LongHashSet>();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet result = statement.executeQuery("SELECT world, x, z FROM durabilities");
+                while (result.next()) {
+                    LongHashSet chunks = stored.get(result.getString(1));
+                    if (chunks == null) {
+                        chunks = new LongHashSet();
+                        stored.put(result.getString(1), chunks);
+                    }
+                    chunks.add(LongHashSet.chunkKey(result.getInt(2), result.getInt(3)));
+                }
+                result.close();
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed listing chunks", e);
+        }
+        return stored;
+    }
+
+    @Override
+    public synchronized void compact() throws IOException {
+        open();
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                statement.execute("VACUUM");
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed compacting " + file.getName(), e);
+        }
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        if (connection == null) {
+            return;
+        }
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                // commits are only synced at checkpoints with synchronous=NORMAL
+                statement.execute("PRAGMA wal_checkpoint(FULL)");
+            } finally {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed syncing " + file.getName(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        connection = null;
+        select = null;
+        insert = null;
+        remove = null;
+    }
+
+    private byte[] select(String world, int chunkX, int chunkZ) throws SQLException {
+        select.setString(1, world);
+        select.setInt(2, chunkX);
+        select.setInt(3, chunkZ);
+        ResultSet result = select.executeQuery();
+        try {
+            return result.next() ? result.getBytes(1) : null;
+        } finally {
+            result.close();
+        }
+    }
+
+    private void insert(String world, int chunkX, int chunkZ, byte[] data, int length) throws SQLException {
+        if (length <= 0) {
+            remove(world, chunkX, chunkZ);
+            return;
+        }
+        if (length != data.length) {
+            byte[] trimmed = new byte[length];
+            System.arraycopy(data, 0, trimmed, 0, length);
+            data = trimmed;
+        }
+        insert.setString(1, world);
+        insert.setInt(2, chunkX);
+        insert.setInt(3, chunkZ);
+        insert.setBytes(4, data);
+        insert.executeUpdate();
+    }
+
+    private void remove(String world, int chunkX, int chunkZ) throws SQLException {
+        remove.setString(1, world);
+        remove.setInt(2, chunkX);
+        remove.setInt(3, chunkZ);
+        remove.executeUpdate();
+    }
+}
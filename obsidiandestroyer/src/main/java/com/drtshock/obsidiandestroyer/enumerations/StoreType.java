@@ -0,0 +1,6 @@
+package com.drtshock.obsidiandestroyer.enumerations;
+
+public enum StoreType {
+    REGION,
+    SQLITE,;
+}
@@ -28,13 +28,13 @@ public class PlayerListener implements Listener {
             Block block = event.getClickedBlock();
             if (itemInHand != null && ConfigManager.getInstance().getDurabilityCheckItem().equals(itemInHand)) {
                 MaterialManager mm = MaterialManager.getInstance();
-                if (mm.getDurabilityEnabled(block.getType().name())) {
+                if (mm.getDurabilityEnabled(block.getType())) {
                     if (player.getGameMode() == GameMode.CREATIVE) {
                         event.setCancelled(true);
                     }
                     int amount = ChunkManager.getInstance().getMaterialDurability(block);
-                    int max = (int) Math.round(mm.getDurability(block.getType().name()) * Util.getMultiplier(block.getLocation()));
-                    player.sendMessage(ChatColor.DARK_PURPLE + "Durability of this block is: " + ChatColor.WHITE + (!mm.isDestructible(block.getType().name()) ? "∞" : (max - amount) + "/" + max));
+                    int max = (int) Math.round(mm.getDurability(block.getType()) * Util.getMultiplier(block.getLocation()));
+                    player.sendMessage(ChatColor.DARK_PURPLE + "Durability of this block is: " + ChatColor.WHITE + (!mm.isDestructible(block.getType()) ? "∞" : (max - amount) + "/" + max));
                 }
             }
         }
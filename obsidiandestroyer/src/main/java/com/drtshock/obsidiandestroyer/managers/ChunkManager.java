@@ -3,8 +3,23 @@ package com.drtshock.obsidiandestroyer.managers;
 import at.pavlov.cannons.event.ProjectileImpactEvent;
 import at.pavlov.cannons.event.ProjectilePiercingEvent;
 import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
+import com.drtshock.obsidiandestroyer.datatypes.BlockPos;
+import com.drtshock.obsidiandestroyer.datatypes.DurabilityMap;
+import com.drtshock.obsidiandestroyer.datatypes.DurabilityMaterial;
 import com.drtshock.obsidiandestroyer.datatypes.EntityData;
+import com.drtshock.obsidiandestroyer.datatypes.ExplosionArena;
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+import com.drtshock.obsidiandestroyer.datatypes.TimingWheel;
+import com.drtshock.obsidiandestroyer.datatypes.io.DurabilityStore;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRArchive;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRConverter;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRManifest;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRRegion;
+import com.drtshock.obsidiandestroyer.datatypes.io.RegionDurabilityStore;
+import com.drtshock.obsidiandestroyer.datatypes.io.SQLiteDurabilityStore;
 import com.drtshock.obsidiandestroyer.enumerations.DamageResult;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
 import com.drtshock.obsidiandestroyer.enumerations.TimerState;
 import com.drtshock.obsidiandestroyer.events.DurabilityDamageEvent;
 import com.drtshock.obsidiandestroyer.events.xEntityExplodeEvent;
@@ -19,20 +34,53 @@ import org.bukkit.entity.TNTPrimed;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.metadata.FixedMetadataValue;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.io.File;
+import java.io.*;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class ChunkManager {
 
     private static ChunkManager instance;
     private final File durabilityDir;
-    private ConcurrentMap<String, ChunkWrapper> chunks = new ConcurrentHashMap<String, ChunkWrapper>();
+    private ScheduledExecutorService journalExecutor;
+    // partitions of the loaded worlds the plugin is enabled in, per world name
+    private final ConcurrentMap<String, WorldPartition> partitions = new ConcurrentHashMap<String, WorldPartition>();
+    // partitions of unloaded worlds that are still writing; main thread only
+    private final Map<String, WorldPartition> closing = new HashMap<String, WorldPartition>();
+    // directories of unloaded worlds being removed by a reset, and the executor removing them; main thread only
+    private final Map<String, Future<?>> deleting = new HashMap<String, Future<?>>();
+    private ExecutorService resetExecutor;
+    // interned world ids, never reused while the plugin runs; main thread only
+    private final Map<String, Integer> worldIds = new HashMap<String, Integer>();
+    // open partitions by world id; main thread only
+    private WorldPartition[] partitionsById = new WorldPartition[0];
+    // last world looked up, explosions resolve the same world over and over; main thread only
+    private World lastWorld;
+    private WorldPartition lastPartition;
     private boolean doneSave = false;
-    private List<String> disabledWorlds;
+    private int percent = 100;
+    private List<ChunkWrapper> autosaveChunks;
+    private int autosaveIndex;
+    private BukkitTask autosaveTask;
+    private long closedWritesQueued = 0L;
+    private long closedWritesAvoided = 0L;
+    private Set<String> disabledWorlds = Collections.emptySet();
+    private DurabilitySnapshot snapshot;
+    // scratch arenas of finished explosions, main thread only
+    private final Deque<ExplosionArena> arenas = new ArrayDeque<ExplosionArena>();
 
     /**
      * Creates wrappers around chunks and sets up the material block tracking
@@ -44,6 +92,14 @@ public class ChunkManager {
         if (!durabilityDir.exists()) {
             durabilityDir.mkdirs();
         }
+        moveFlatFiles();
+        if (ConfigManager.getInstance().getJournalEnabled()) {
+            journalExecutor = Executors.newSingleThreadScheduledExecutor(Util.threadFactory("ObsidianDestroyer Journal"));
+        }
+        if (ConfigManager.getInstance().getAutosaveEnabled()) {
+            scheduleAutosave();
+        }
+        scheduleExpiries();
 
         load();
     }
@@ -57,6 +113,414 @@ public class ChunkManager {
         return instance;
     }
 
+    /**
+     * Checks if the durability directory holds files of the layout without world directories
+     *
+     * @return true if there are files to move
+     */
+    private boolean hasFlatFiles() {
+        File[] files = durabilityDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the durabilities stored for every world in one directory into the directories of their
+     * worlds. Legacy chunk files, the journal and emergency files of the old layout are applied
+     * first; a snapshot copied into the durability directory is applied the same way.
+     */
+    private void moveFlatFiles() {
+        if (!hasFlatFiles()) {
+            return;
+        }
+        final long time = System.currentTimeMillis();
+        ObsidianDestroyer.LOG.log(Level.INFO, "Moving durabilities into world directories...");
+        final StoreType type = StoreType.SQLITE.name().equals(ODRManifest.readStoreType(durabilityDir)) ? StoreType.SQLITE : StoreType.REGION;
+        final DurabilityStore flat = WorldPartition.openStore(durabilityDir, type, null);
+        convertLegacyFiles(flat);
+        WorldPartition.replayJournal(durabilityDir, flat);
+        WorldPartition.applyEmergencyFiles(durabilityDir, flat);
+        // chunks left in a store of the other type are moved as well, the store in use wins
+        List<DurabilityStore> sources = new ArrayList<DurabilityStore>();
+        boolean keepDatabase = false;
+        if (flat instanceof SQLiteDurabilityStore) {
+            sources.add(new RegionDurabilityStore(durabilityDir, 64));
+        } else if (new File(durabilityDir, SQLiteDurabilityStore.FILE_NAME).exists()) {
+            try {
+                sources.add(new SQLiteDurabilityStore(durabilityDir));
+            } catch (IOException e) {
+                // the database is kept until it can be read
+                e.printStackTrace();
+                keepDatabase = true;
+            }
+        }
+        sources.add(flat);
+        Map<String, DurabilityStore> targets = new HashMap<String, DurabilityStore>();
+        int moved = 0;
+        boolean failed = false;
+        try {
+            for (DurabilityStore source : sources) {
+                for (Map.Entry<String, LongHashSet> world : source.getStoredChunks().entrySet()) {
+                    DurabilityStore target = targets.get(world.getKey());
+                    if (target == null) {
+                        File worldDir = new File(durabilityDir, world.getKey());
+                        worldDir.mkdirs();
+                        target = WorldPartition.openStore(worldDir, ConfigManager.getInstance().getStoreType(), world.getKey());
+                        targets.put(world.getKey(), target);
+                    }
+                    for (long[] region : ODRRegion.batches(world.getValue().toArray())) {
+                        LongObjectMap<byte[]> data = source.getAll(world.getKey(), region);
+                        target.putAll(world.getKey(), data);
+                        moved += data.size();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed moving durabilities into world directories!");
+            e.printStackTrace();
+            failed = true;
+        } finally {
+            for (DurabilityStore source : sources) {
+                source.close();
+            }
+            for (DurabilityStore target : targets.values()) {
+                target.close();
+            }
+        }
+        if (!failed) {
+            File[] files = durabilityDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.isFile() && !(keepDatabase && file.getName().startsWith(SQLiteDurabilityStore.FILE_NAME)) && !file.delete()) {
+                        ObsidianDestroyer.LOG.log(Level.WARNING, "Failed to remove {0}", file.getName());
+                    }
+                }
+            }
+        }
+        ObsidianDestroyer.LOG.log(Level.INFO, "Moved durabilities of {0} chunks into {1} world directories in {2} ms.", new Object[]{moved, targets.size(), System.currentTimeMillis() - time});
+    }
+
+    /**
+     * Moves the legacy per chunk durability files into a durability store
+     *
+     * @param store the store
+     */
+    private void convertLegacyFiles(DurabilityStore store) {
+        if (!ODRConverter.hasLegacyFiles(durabilityDir)) {
+            return;
+        }
+        final long time = System.currentTimeMillis();
+        ObsidianDestroyer.LOG.log(Level.INFO, "Converting chunk durability files...");
+        ODRConverter converter = new ODRConverter(durabilityDir, store);
+        int converted = converter.convert();
+        for (String name : converter.getFailed()) {
+            ObsidianDestroyer.LOG.log(Level.WARNING, "Failed to convert file {0}", name);
+        }
+        ObsidianDestroyer.LOG.log(Level.INFO, "Converted {0} chunk durability files in {1} ms.", new Object[]{converted, System.currentTimeMillis() - time});
+    }
+
+    /**
+     * Opens the partition of a world, once the partition of its previous load finished writing
+     * and a reset finished removing its directory
+     *
+     * @param world the world name
+     * @return the partition
+     */
+    private WorldPartition openPartition(String world) {
+        WorldPartition previous = closing.remove(world);
+        if (previous != null) {
+            previous.awaitClose(System.nanoTime() + TimeUnit.SECONDS.toNanos(ConfigManager.getInstance().getShutdownDeadline()));
+        }
+        Future<?> deletion = deleting.remove(world);
+        if (deletion != null) {
+            try {
+                deletion.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        final int id = internWorldId(world);
+        WorldPartition partition = new WorldPartition(world, id, new File(durabilityDir, world), ConfigManager.getInstance().getStoreType(), journalExecutor);
+        partitions.put(world, partition);
+        partitionsById[id] = partition;
+        lastWorld = null;
+        return partition;
+    }
+
+    /**
+     * Saves and closes the partition of a world in the background, without waiting for the writes
+     *
+     * @param partition the partition
+     */
+    private void closePartition(WorldPartition partition) {
+        partitions.remove(partition.getWorldName());
+        partitionsById[partition.getWorldId()] = null;
+        lastWorld = null;
+        lastPartition = null;
+        if (snapshot != null) {
+            // read before the writes of the close are queued
+            snapshot.preserveWorld(partition.getWorldName());
+        }
+        partition.close();
+        closedWritesQueued += partition.getWritesQueued();
+        closedWritesAvoided += partition.getWritesAvoided();
+        closing.put(partition.getWorldName(), partition);
+    }
+
+    /**
+     * Gets the partition of a world
+     *
+     * @param world the world
+     * @return the partition, or null if the plugin is disabled in the world
+     */
+    private WorldPartition getPartition(World world) {
+        if (world == null) {
+            return null;
+        }
+        if (world != lastWorld) {
+            lastPartition = partitions.get(world.getName());
+            lastWorld = world;
+        }
+        return lastPartition;
+    }
+
+    /**
+     * Gets the interned id of a world the plugin is enabled in
+     *
+     * @param world the world
+     * @return the world id, or -1 if the plugin is disabled in the world
+     */
+    public int getWorldId(World world) {
+        WorldPartition partition = getPartition(world);
+        return partition != null ? partition.getWorldId() : -1;
+    }
+
+    /**
+     * Gets the interned id of a world the plugin is enabled in by its name
+     *
+     * @param world the world name
+     * @return the world id, or -1 if the world is not loaded or the plugin is disabled in it
+     */
+    public int getWorldId(String world) {
+        WorldPartition partition = world != null ? partitions.get(world) : null;
+        return partition != null ? partition.getWorldId() : -1;
+    }
+
+    /**
+     * Gets the partition of a world by its interned id
+     *
+     * @param worldId the world id, see {@link #getWorldId(World)}
+     * @return the partition, or null if the world is not loaded or the plugin is disabled in it
+     */
+    public WorldPartition getPartition(int worldId) {
+        return worldId >= 0 && worldId < partitionsById.length ? partitionsById[worldId] : null;
+    }
+
+    /**
+     * Interns the name of a world. Ids are handed out on first use and stay the same until the
+     * plugin is disabled. Must be called on the main thread.
+     *
+     * @param world the world name
+     * @return the world id
+     */
+    private int internWorldId(String world) {
+        Integer id = worldIds.get(world);
+        if (id == null) {
+            id = worldIds.size();
+            worldIds.put(world, id);
+            if (id >= partitionsById.length) {
+                partitionsById = Arrays.copyOf(partitionsById, Math.max(4, partitionsById.length * 2));
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Loads a world into the chunk manager, reading the durabilities of its loaded chunks
+     *
+     * @param world the world to load
+     */
+    public void loadWorld(World world) {
+        if (world == null || disabledWorlds.contains(world.getName()) || partitions.containsKey(world.getName())) {
+            return;
+        }
+
+        openPartition(world.getName());
+        for (Chunk chunk : world.getLoadedChunks()) {
+            loadChunk(chunk);
+        }
+    }
+
+    /**
+     * Unloads a world from the chunk manager. Its chunks are saved in the background and the other
+     * worlds are not affected.
+     *
+     * @param world the world to unload
+     */
+    public void unloadWorld(World world) {
+        WorldPartition partition = getPartition(world);
+        if (partition != null) {
+            closePartition(partition);
+        }
+    }
+
+    /**
+     * Schedules the autosave cycles
+     */
+    private void scheduleAutosave() {
+        final long intervalTicks = ConfigManager.getInstance().getAutosaveInterval() * 20L;
+        ObsidianDestroyer.getInstance().getServer().getScheduler().runTaskTimer(ObsidianDestroyer.getInstance(), new Runnable() {
+            @Override
+            public void run() {
+                startAutosave();
+            }
+        }, intervalTicks, intervalTicks);
+    }
+
+    private void scheduleExpiries() {
+        ObsidianDestroyer.getInstance().getServer().getScheduler().runTaskTimer(ObsidianDestroyer.getInstance(), new Runnable() {
+            @Override
+            public void run() {
+                expireDurabilities();
+            }
+        }, 20L, 20L);
+    }
+
+    /**
+     * Resets or regenerates the durabilities whose timer ended. Only the timers that are due are
+     * visited, see {@link TimingWheel}.
+     */
+    public void expireDurabilities() {
+        final long currentTime = System.currentTimeMillis();
+        List<TimingWheel.Entry> expired = new ArrayList<TimingWheel.Entry>();
+        for (WorldPartition partition : partitions.values()) {
+            expired.clear();
+            if (partition.getExpiries().advance(currentTime, expired) == 0) {
+                continue;
+            }
+            World world = ObsidianDestroyer.getInstance().getServer().getWorld(partition.getWorldName());
+            if (world == null) {
+                continue;
+            }
+            for (TimingWheel.Entry entry : expired) {
+                ChunkWrapper chunk = partition.getWrapper(LongHashSet.chunkX(entry.key), LongHashSet.chunkZ(entry.key));
+                if (chunk == null) {
+                    // unloaded since, the timer is scheduled again when the chunk is read
+                    continue;
+                }
+                if (chunk.isLoading()) {
+                    // scheduled by a read that is still running, retry on the next advance
+                    partition.getExpiries().schedule(entry.key, entry.id, entry.deadline);
+                    continue;
+                }
+                final long value = chunk.getValue(entry.id);
+                if (value == DurabilityMap.ABSENT || DurabilityMap.time(value) != entry.deadline) {
+                    // removed or restarted since
+                    continue;
+                }
+                Block block = world.getBlockAt(ChunkWrapper.toX(chunk.getChunkX(), entry.id), ChunkWrapper.toY(entry.id), ChunkWrapper.toZ(chunk.getChunkZ(), entry.id));
+                if (MaterialManager.getInstance().getDurabilityResetTimerEnabled(block.getType())) {
+                    resetDurability(chunk, block, value, currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets the durability of a block whose timer ended, or regenerates it by the time passed
+     *
+     * @param chunk       the wrapper of the block
+     * @param block       the block
+     * @param value       the packed durability and durability time of the block
+     * @param currentTime the current time
+     * @return the state of the durability timer after the reset
+     */
+    private TimerState resetDurability(ChunkWrapper chunk, Block block, long value, long currentTime) {
+        if (ConfigManager.getInstance().getMaterialsRegenerateOverTime()) {
+            final long regenTime = MaterialManager.getInstance().getDurabilityResetTime(block.getType());
+            final int amount = Math.max(1, Math.round((float) (currentTime - DurabilityMap.time(value)) / regenTime));
+            final int currentDurability = DurabilityMap.durability(value) - amount;
+            if (currentDurability > 0) {
+                startNewTimer(block, currentDurability, TimerState.RUN);
+                return TimerState.RUN;
+            }
+        }
+        chunk.removeKey(block);
+        return TimerState.END;
+    }
+
+    /**
+     * Starts an autosave cycle, unless one is still running. The cycle walks the loaded chunks
+     * over as many ticks as needed, spending at most the configured time budget per tick. With
+     * the journal enabled, the cycle is also its checkpoint: the journal is rotated at the start
+     * and the sealed segments are removed once every write of the cycle is done.
+     */
+    public void startAutosave() {
+        if (autosaveTask != null) {
+            return;
+        }
+        doneSave = false;
+        percent = 0;
+        autosaveChunks = new ArrayList<ChunkWrapper>();
+        for (WorldPartition partition : partitions.values()) {
+            partition.retryFailedWrites();
+            autosaveChunks.addAll(partition.getWrappers());
+            partition.sealJournal();
+        }
+        autosaveIndex = 0;
+        autosaveTask = ObsidianDestroyer.getInstance().getServer().getScheduler().runTaskTimer(ObsidianDestroyer.getInstance(), new Runnable() {
+            @Override
+            public void run() {
+                autosaveTick();
+            }
+        }, 1L, 1L);
+    }
+
+    /**
+     * Queues the writes of dirty chunks until the time budget of the tick is spent
+     */
+    private void autosaveTick() {
+        final long deadline = System.nanoTime() + ConfigManager.getInstance().getAutosaveTimeBudget() * 1000000L;
+        final int total = autosaveChunks.size();
+        while (autosaveIndex < total) {
+            ChunkWrapper wrapper = autosaveChunks.get(autosaveIndex++);
+            WorldPartition partition = partitions.get(wrapper.getWorldName());
+            // unloaded chunks were saved on unload, chunks still being read are unchanged
+            if (partition != null && partition.getWrapper(wrapper.getChunkX(), wrapper.getChunkZ()) == wrapper && !wrapper.isLoading() && wrapper.isDirty()) {
+                queueSave(partition, wrapper, false);
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+        }
+        percent = total == 0 ? 100 : (autosaveIndex * 100) / total;
+        if (autosaveIndex >= total) {
+            finishAutosave();
+        }
+    }
+
+    /**
+     * Ends the running autosave cycle
+     */
+    private void finishAutosave() {
+        autosaveTask.cancel();
+        autosaveTask = null;
+        autosaveChunks = null;
+        for (WorldPartition partition : partitions.values()) {
+            partition.releaseJournal();
+        }
+        percent = 100;
+        doneSave = true;
+    }
+
     /**
      * Handles the entity explosion event
      *
@@ -79,7 +543,9 @@ public class ChunkManager {
 
         // Debug time taken
         final long time = System.currentTimeMillis();
-        final int radius = ConfigManager.getInstance().getRadius();
+        // One config for the whole explosion
+        final ConfigSnapshot config = ConfigManager.getInstance().getSnapshot();
+        final int radius = config.getRadius();
 
         // cancel if radius is < 0 or > 10
         if (radius < 0) {
@@ -92,36 +558,23 @@ public class ChunkManager {
 
         // Detonator
         final Entity detonator = event.getEntity();
+        // Explosion source of the detonator, resolved once for every block
+        final int source = MaterialManager.getInstance().getSource(detonator);
+        // World of the explosion, resolved once for every block
+        final int worldId = getWorldId(detonatorLoc.getWorld());
         // Detonation location of the explosion
 
         if (detonator != null) {
             // Check for handled explosion types, with option to ignore
-            final EntityType eventTypeRep = detonator.getType();
-            if (!ConfigManager.getInstance().getIgnoreUnhandledExplosionTypes()
-                    && !(eventTypeRep.equals(EntityType.PRIMED_TNT)
-                    || eventTypeRep.equals(EntityType.MINECART_TNT)
-                    || eventTypeRep.equals(EntityType.CREEPER)
-                    || eventTypeRep.equals(EntityType.WITHER)
-                    || eventTypeRep.equals(EntityType.GHAST)
-                    || eventTypeRep.equals(EntityType.FIREBALL)
-                    || eventTypeRep.equals(EntityType.SMALL_FIREBALL))) {
+            if (!config.getIgnoreUnhandledExplosionTypes() && source < 0) {
                 return;
             }
         }
 
-        // List of blocks that will be removed from the blocklist
-        List<Block> blocksIgnored = new ArrayList<Block>();
-        // List of blocks handled by this event
-        LinkedList<Block> blocksDestroyed = new LinkedList<Block>();
-
-        LinkedList<Block> xblocksDestroyed = new LinkedList<Block>();
-        // Bleeding Damage blocked blocks
-        List<Location> blockedBlockLocations = new ArrayList<Location>();
-
         // Liquid overrides
-        if (ConfigManager.getInstance().getBypassAllFluidProtection()) {
+        if (config.getBypassAllFluidProtection()) {
             // Protects TNT cannons from exploding themselves
-            if (ConfigManager.getInstance().getProtectTNTCannons()) {
+            if (config.getProtectTNTCannons()) {
                 int redstoneCount = 0;
                 final int cannon_radius = 2;
                 for (int x = -cannon_radius; x <= cannon_radius; x++) {
@@ -143,260 +596,271 @@ public class ChunkManager {
             // metadata for future tracking of liquid handling
             detonator.setMetadata("ObbyLiquidEntity", new FixedMetadataValue(ObsidianDestroyer.getInstance(), new EntityData(event.getEntityType())));
 
-        } else if ((detonatorLoc.getBlock().isLiquid()) && (ConfigManager.getInstance().getFluidsProtectIndustructables())) {
+        } else if ((detonatorLoc.getBlock().isLiquid()) && (config.getFluidsProtectIndustructables())) {
             // handle the liquid explosion normally
             return;
         }
 
-        // Check explosion blocks and their distance from the detonation.
-        for (Block block : event.blockList()) {
-            // location corrections...
-            Location blockLocation = block.getLocation();
-            blockLocation.setY(blockLocation.getBlockY() + 0.5);
-            if (blockLocation.getBlockX() > 0) {
-                blockLocation.setX(blockLocation.getBlockX() + 0.5);
-            } else {
-                blockLocation.setX(blockLocation.getBlockX() + -0.5);
-            }
-            if (blockLocation.getBlockZ() > 0) {
-                blockLocation.setZ(blockLocation.getBlockZ() + 0.5);
-            } else {
-                blockLocation.setZ(blockLocation.getBlockZ() + -0.5);
-            }
-            // distance from detonator to the target block
-            final double dist = detonatorLoc.distance(blockLocation);
-
-            // Damage bleeding fix
-            if (ConfigManager.getInstance().getDisableDamageBleeding()) {
-                // Attempt to prevent bleeding of damage to materials behind blocks not destroyed
-                if (MaterialManager.getInstance().contains(block.getType().name())) {
-                    // distance checks: if max ignore; if not too close check sight; else apply damage
-                    if (dist > Util.getMaxDistance(block.getType().name(), radius) + 0.4) {
-                        blocksIgnored.add(block);
-                        continue;
-                    } else if (dist > 1.8) {
-                        // if greater than target distance apply hit check
-                        // Radial hitscan check for blocking blocks, returns the blocking path
-                        final List<Location> path = Util.getTargetsPathBlocked(blockLocation, detonatorLoc, false);
-
-                        //if (Util.isTargetsPathBlocked(blockLocation, detonatorLoc, false)) {
-                        if (path.size() > 0) {
-                            // Add to blocked locations and ignore damage
-                            blockedBlockLocations.add(blockLocation);
-                            blocksIgnored.add(block);
-                            ObsidianDestroyer.vdebug("[E] Blocked Bleeding Damage!! " + blockLocation.toString() + " -dist " + dist);
-                            continue;
-                        }
-                    }
+        // Ignored, destroyed and blocked blocks of this explosion
+        final ExplosionArena arena = acquireArena(detonatorLoc, radius);
 
-                    // Apply damage to block material
-                    DamageResult result = damageBlock(blockLocation, detonator);
-                    if (result == DamageResult.DESTROY) {
-                        blocksDestroyed.add(block);
-                    } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED) {
-                        blocksIgnored.add(block);
-                    }
-                    ObsidianDestroyer.vdebug("Event Block Damage!! " + blockLocation.toString() + " -dist " + dist);
+        // Bypass list for special handling's
+        final List<Block> bypassBlockList = new ArrayList<Block>();
+        final List<Block> destroyedBlocks;
+        final List<Location> blockedLocations;
+        try {
+            // Check explosion blocks and their distance from the detonation.
+            for (Block block : event.blockList()) {
+                arena.mark(block, ExplosionArena.IN_EVENT);
+                // location corrections...
+                Location blockLocation = block.getLocation();
+                blockLocation.setY(blockLocation.getBlockY() + 0.5);
+                if (blockLocation.getBlockX() > 0) {
+                    blockLocation.setX(blockLocation.getBlockX() + 0.5);
                 } else {
-                    // handle non tracked materials blocked and ignore non solids
-                    final List<Location> path = Util.getTargetsPathBlocked(blockLocation, detonatorLoc, true);
-                    if (path.size() > 0) {
-                        // Add to blocked locations and ignore damage
-                        blockedBlockLocations.add(blockLocation);
-                        blocksIgnored.add(block);
-                        ObsidianDestroyer.vdebug("[E] Blocked Bleeding Damage!!! " + blockLocation.toString() + " -dist " + dist);
-                    } else {
-                        xblocksDestroyed.add(block);
-                    }
+                    blockLocation.setX(blockLocation.getBlockX() + -0.5);
                 }
-            } else if (MaterialManager.getInstance().contains(block.getType().name())) {
-                // Original handling
-                if (dist > Util.getMaxDistance(block.getType().name(), radius) + 0.4) {
-                    blocksIgnored.add(block);
+                if (blockLocation.getBlockZ() > 0) {
+                    blockLocation.setZ(blockLocation.getBlockZ() + 0.5);
                 } else {
-                    // Apply damage to block material
-                    DamageResult result = damageBlock(blockLocation, detonator);
-                    if (result == DamageResult.DESTROY) {
-                        // Destroy the block
-                        blocksDestroyed.add(block);
-                    } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED) {
-                        // Don't destroy
-                        blocksIgnored.add(block);
-                    }
+                    blockLocation.setZ(blockLocation.getBlockZ() + -0.5);
                 }
-            }
-        }
-
-        // Bedrock override bypass
-        final boolean enabledBedrock = MaterialManager.getInstance().contains(Material.BEDROCK.name());
-
-        // =================================================
-        // Material Explosion radius check for all materials
-        // Loop through all blocks within the applied radius
-        for (int x = -radius; x <= radius; x++) {
-            for (int y = radius; y >= -radius; y--) {
-                for (int z = -radius; z <= radius; z++) {
+                // distance from detonator to the target block
+                final double dist = detonatorLoc.distance(blockLocation);
+
+                // Damage bleeding fix
+                if (config.getDisableDamageBleeding()) {
+                    // Attempt to prevent bleeding of damage to materials behind blocks not destroyed
+                    if (MaterialManager.getInstance().contains(block.getType())) {
+                        // distance checks: if max ignore; if not too close check sight; else apply damage
+                        if (dist > Util.getMaxDistance(block.getType(), radius) + 0.4) {
+                            arena.mark(block, ExplosionArena.IGNORED);
+                            continue;
+                        } else if (dist > 1.8) {
+                            // if greater than target distance apply hit check
+                            // Radial hitscan check for blocking blocks, returns the blocking path
+                            final List<Location> path = Util.getTargetsPathBlocked(blockLocation, detonatorLoc, false);
 
-                    // Target location around the detonator
-                    Location targetLoc = new Location(detonator.getWorld(), detonatorLoc.getX() + x, detonatorLoc.getY() + y, detonatorLoc.getZ() + z);
+                            //if (Util.isTargetsPathBlocked(blockLocation, detonatorLoc, false)) {
+                            if (path.size() > 0) {
+                                // Add to blocked locations and ignore damage
+                                arena.block(blockLocation);
+                                arena.mark(block, ExplosionArena.IGNORED);
+                                ObsidianDestroyer.vdebug("[E] Blocked Bleeding Damage!! " + blockLocation.toString() + " -dist " + dist);
+                                continue;
+                            }
+                        }
 
-                    // location corrections...
-                    targetLoc.setY(targetLoc.getBlockY() + 0.5);
-                    if (targetLoc.getBlockX() > 0) {
-                        targetLoc.setX(targetLoc.getBlockX() + 0.5);
+                        // Apply damage to block material
+                        DamageResult result = damageBlock(worldId, BlockPos.of(blockLocation), detonator, source);
+                        if (result == DamageResult.DESTROY) {
+                            arena.destroy(block);
+                        } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED) {
+                            arena.mark(block, ExplosionArena.IGNORED);
+                        }
+                        ObsidianDestroyer.vdebug("Event Block Damage!! " + blockLocation.toString() + " -dist " + dist);
                     } else {
-                        targetLoc.setX(targetLoc.getBlockX() + -0.5);
+                        // handle non tracked materials blocked and ignore non solids
+                        final List<Location> path = Util.getTargetsPathBlocked(blockLocation, detonatorLoc, true);
+                        if (path.size() > 0) {
+                            // Add to blocked locations and ignore damage
+                            arena.block(blockLocation);
+                            arena.mark(block, ExplosionArena.IGNORED);
+                            ObsidianDestroyer.vdebug("[E] Blocked Bleeding Damage!!! " + blockLocation.toString() + " -dist " + dist);
+                        } else {
+                            arena.mark(block, ExplosionArena.UNHANDLED_DESTROYED);
+                        }
                     }
-                    if (targetLoc.getBlockZ() > 0) {
-                        targetLoc.setZ(targetLoc.getBlockZ() + 0.5);
+                } else if (MaterialManager.getInstance().contains(block.getType())) {
+                    // Original handling
+                    if (dist > Util.getMaxDistance(block.getType(), radius) + 0.4) {
+                        arena.mark(block, ExplosionArena.IGNORED);
                     } else {
-                        targetLoc.setZ(targetLoc.getBlockZ() + -0.5);
+                        // Apply damage to block material
+                        DamageResult result = damageBlock(worldId, BlockPos.of(blockLocation), detonator, source);
+                        if (result == DamageResult.DESTROY) {
+                            // Destroy the block
+                            arena.destroy(block);
+                        } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED) {
+                            // Don't destroy
+                            arena.mark(block, ExplosionArena.IGNORED);
+                        }
                     }
+                }
+            }
 
-                    // ignore if air or ignored
-                    if ((blocksIgnored.contains(targetLoc.getBlock())) || targetLoc.getBlock().getType() == Material.AIR) {
-                        continue;
-                    }
-                    // Bedrock check
-                    if (targetLoc.getBlock().getType() == Material.BEDROCK && !enabledBedrock) {
-                        continue;
-                    }
+            // Bedrock override bypass
+            final boolean enabledBedrock = MaterialManager.getInstance().contains(Material.BEDROCK);
+
+            // =================================================
+            // Material Explosion radius check for all materials
+            // Loop through all blocks within the applied radius
+            for (int x = -radius; x <= radius; x++) {
+                for (int y = radius; y >= -radius; y--) {
+                    for (int z = -radius; z <= radius; z++) {
+
+                        // Target location around the detonator
+                        Location targetLoc = new Location(detonator.getWorld(), detonatorLoc.getX() + x, detonatorLoc.getY() + y, detonatorLoc.getZ() + z);
+
+                        // location corrections...
+                        targetLoc.setY(targetLoc.getBlockY() + 0.5);
+                        if (targetLoc.getBlockX() > 0) {
+                            targetLoc.setX(targetLoc.getBlockX() + 0.5);
+                        } else {
+                            targetLoc.setX(targetLoc.getBlockX() + -0.5);
+                        }
+                        if (targetLoc.getBlockZ() > 0) {
+                            targetLoc.setZ(targetLoc.getBlockZ() + 0.5);
+                        } else {
+                            targetLoc.setZ(targetLoc.getBlockZ() + -0.5);
+                        }
+                        // Block of the corrected location, resolved once
+                        final Block targetBlock = targetLoc.getBlock();
+                        final long targetPos = BlockPos.of(targetLoc);
 
-                    // Radius of effect of the handled explosion that is recreated
-                    final double radiuz = Math.min(radius, Util.getMaxDistance(targetLoc.getBlock().getType().name(), radius)) + 0.6;
-                    // Distance of detonator to this blocks location
-                    final double distance = detonatorLoc.distance(targetLoc);
+                        // ignore if air or ignored
+                        if (arena.isMarked(targetLoc, ExplosionArena.IGNORED) || targetBlock.getType() == Material.AIR) {
+                            continue;
+                        }
+                        // Bedrock check
+                        if (targetBlock.getType() == Material.BEDROCK && !enabledBedrock) {
+                            continue;
+                        }
 
-                    if (blocksDestroyed.contains(targetLoc.getBlock())) {
-                        // if already tracked this block...
-                        continue;
-                    }
+                        // Radius of effect of the handled explosion that is recreated
+                        final double radiuz = Math.min(radius, Util.getMaxDistance(targetBlock.getType(), radius)) + 0.6;
+                        // Distance of detonator to this blocks location
+                        final double distance = detonatorLoc.distance(targetLoc);
 
-                    // Liquid overrides
-                    if (ConfigManager.getInstance().getBypassAllFluidProtection()) {
-                        // Special handling for fluids is enabled
-                        if (distance < radiuz - 0.1 && (Util.isNearLiquid(targetLoc) || targetLoc.getBlock().isLiquid())) {
-                            // if within radius and is a near or a fluid
-                            if (distance > radiuz - 0.6 && Math.random() <= 0.4) {
-                                // semi random radius calculation for edges
-                                blocksIgnored.add(targetLoc.getBlock());
-                                continue;
-                            }
+                        if (arena.isMarked(targetLoc, ExplosionArena.DESTROYED)) {
+                            // if already tracked this block...
+                            continue;
+                        }
 
-                            if (MaterialManager.getInstance().contains(targetLoc.getBlock().getType().name())) {
-                                // if this material is being handled for durability
-                                double damper = MaterialManager.getInstance().getFluidDamperAmount(targetLoc.getBlock().getType().name());
-                                if (!targetLoc.getBlock().isLiquid() && damper > 0 && damper >= Math.random()) {
-                                    // Ignore the block if the explosion has been absorbed
-                                    ObsidianDestroyer.vdebug("Nearby Fluid Absorbed Explosion Damage to Block! " + targetLoc.toString());
-                                    blocksIgnored.add(targetLoc.getBlock());
+                        // Liquid overrides
+                        if (config.getBypassAllFluidProtection()) {
+                            // Special handling for fluids is enabled
+                            if (distance < radiuz - 0.1 && (Util.isNearLiquid(targetLoc) || targetBlock.isLiquid())) {
+                                // if within radius and is a near or a fluid
+                                if (distance > radiuz - 0.6 && Math.random() <= 0.4) {
+                                    // semi random radius calculation for edges
+                                    arena.mark(targetLoc, ExplosionArena.IGNORED);
                                     continue;
                                 }
 
-                                // Apply damage to block material
-                                DamageResult result = damageBlock(targetLoc, detonator);
-                                if (result == DamageResult.DESTROY) {
-                                    // Add block to list to destroy
-                                    blocksDestroyed.add(targetLoc.getBlock());
-                                    continue;
-                                } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED || result == DamageResult.NONE) {
-                                    // Add block to ignore list to not destroy
-                                    blocksIgnored.add(targetLoc.getBlock());
+                                if (MaterialManager.getInstance().contains(targetBlock.getType())) {
+                                    // if this material is being handled for durability
+                                    double damper = MaterialManager.getInstance().get(targetBlock.getType()).getFluidDamper();
+                                    if (!targetBlock.isLiquid() && damper > 0 && damper >= Math.random()) {
+                                        // Ignore the block if the explosion has been absorbed
+                                        ObsidianDestroyer.vdebug("Nearby Fluid Absorbed Explosion Damage to Block! " + targetLoc.toString());
+                                        arena.mark(targetLoc, ExplosionArena.IGNORED);
+                                        continue;
+                                    }
+
+                                    // Apply damage to block material
+                                    DamageResult result = damageBlock(worldId, targetPos, detonator, source);
+                                    if (result == DamageResult.DESTROY) {
+                                        // Add block to list to destroy
+                                        arena.destroy(targetBlock);
+                                        continue;
+                                    } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED || result == DamageResult.NONE) {
+                                        // Add block to ignore list to not destroy
+                                        arena.mark(targetLoc, ExplosionArena.IGNORED);
+                                        continue;
+                                    }
+                                } else {
+                                    // add block or fluid to list to destroy
+                                    arena.destroy(targetBlock);
                                     continue;
                                 }
-                            } else {
-                                // add block or fluid to list to destroy
-                                blocksDestroyed.add(targetLoc.getBlock());
-                                continue;
                             }
                         }
-                    }
-
-                    // Check if handling
-                    if (!MaterialManager.getInstance().contains(targetLoc.getBlock().getType().name()) && !blockedBlockLocations.contains(targetLoc)) {
-                        // ignore material if not being handled
-                        continue;
-                    }
 
-                    // Radius
-                    if (distance <= radiuz) {
-                        // Block damage within the radius
-                        if (distance > radiuz - 0.4 && Math.random() <= 0.2) {
-                            // semi random edge radius calculation
-                            blocksIgnored.add(targetLoc.getBlock());
+                        // Check if handling
+                        if (!MaterialManager.getInstance().contains(targetBlock.getType()) && !arena.isMarked(targetLoc, ExplosionArena.BLOCKED)) {
+                            // ignore material if not being handled
                             continue;
                         }
 
-                        // Damage bleeding fix
-                        if (ConfigManager.getInstance().getDisableDamageBleeding() && distance > 1.8) {
-                            // Radial hitscan check for blocking blocks, returns the blocking path
-                            final List<Location> path = Util.getTargetsPathBlocked(targetLoc, detonatorLoc, false);
+                        // Radius
+                        if (distance <= radiuz) {
+                            // Block damage within the radius
+                            if (distance > radiuz - 0.4 && Math.random() <= 0.2) {
+                                // semi random edge radius calculation
+                                arena.mark(targetLoc, ExplosionArena.IGNORED);
+                                continue;
+                            }
 
-                            if (path.size() > 0) {
-                                // the blocks protected path size is 1 or more
-                                if (!(Util.matchBlocksToLocations(path, blocksDestroyed) && !Util.matchBlocksToLocations(path, xblocksDestroyed))
-                                        || Util.matchLocationsToLocations(path, blockedBlockLocations) || Util.matchBlocksToLocations(path, blocksIgnored)) {
-                                    // the block is protected via its path
-                                    blockedBlockLocations.add(targetLoc);
-                                    blocksIgnored.add(targetLoc.getBlock());
-                                    ObsidianDestroyer.vdebug("[L] Blocked Bleeding Path Damage!! Blocked: " + targetLoc.toString() + " -dist " + distance + " -size " + path.size());
-                                    continue;
-                                } else if (path.size() > 2 || distance >= 3) {
-                                    // the block is too far away and or its protected path is too long
-                                    blocksIgnored.add(targetLoc.getBlock());
-                                    ObsidianDestroyer.vdebug("[L] Blocked Bleeding Path Damage!! Over: " + targetLoc.toString() + " -dist " + distance + " -size " + path.size());
-                                    continue;
+                            // Damage bleeding fix
+                            if (config.getDisableDamageBleeding() && distance > 1.8) {
+                                // Radial hitscan check for blocking blocks, returns the blocking path
+                                final List<Location> path = Util.getTargetsPathBlocked(targetLoc, detonatorLoc, false);
+
+                                if (path.size() > 0) {
+                                    // the blocks protected path size is 1 or more
+                                    if (!(arena.isAnyMarked(path, ExplosionArena.DESTROYED) && !arena.isAnyMarked(path, ExplosionArena.UNHANDLED_DESTROYED))
+                                            || arena.isAnyMarked(path, ExplosionArena.BLOCKED | ExplosionArena.IGNORED)) {
+                                        // the block is protected via its path
+                                        arena.block(targetLoc);
+                                        arena.mark(targetLoc, ExplosionArena.IGNORED);
+                                        ObsidianDestroyer.vdebug("[L] Blocked Bleeding Path Damage!! Blocked: " + targetLoc.toString() + " -dist " + distance + " -size " + path.size());
+                                        continue;
+                                    } else if (path.size() > 2 || distance >= 3) {
+                                        // the block is too far away and or its protected path is too long
+                                        arena.mark(targetLoc, ExplosionArena.IGNORED);
+                                        ObsidianDestroyer.vdebug("[L] Blocked Bleeding Path Damage!! Over: " + targetLoc.toString() + " -dist " + distance + " -size " + path.size());
+                                        continue;
+                                    }
                                 }
                             }
-                        }
 
-                        // Apply damage to block material
-                        DamageResult result = damageBlock(targetLoc, detonator);
-                        if (result == DamageResult.DESTROY) {
-                            // Add block to list to destroy
-                            blocksDestroyed.add(targetLoc.getBlock());
-                        } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED || result == DamageResult.NONE) {
-                            // Add block to ignore list to not destroy
-                            blocksIgnored.add(targetLoc.getBlock());
-                        } else if (result == DamageResult.DISABLED) {
-                            // This shouldn't really happen...
-                            blocksDestroyed.add(targetLoc.getBlock());
+                            // Apply damage to block material
+                            DamageResult result = damageBlock(worldId, targetPos, detonator, source);
+                            if (result == DamageResult.DESTROY) {
+                                // Add block to list to destroy
+                                arena.destroy(targetBlock);
+                            } else if (result == DamageResult.DAMAGE || result == DamageResult.CANCELLED || result == DamageResult.NONE) {
+                                // Add block to ignore list to not destroy
+                                arena.mark(targetLoc, ExplosionArena.IGNORED);
+                            } else if (result == DamageResult.DISABLED) {
+                                // This shouldn't really happen...
+                                arena.destroy(targetBlock);
+                            }
+                            ObsidianDestroyer.vdebug("Block Damage!! " + targetLoc.toString() + " -dist " + distance);
+                        } else if (arena.isMarked(targetLoc, ExplosionArena.IN_EVENT)) {
+                            // Ignore blocks outside of radius
+                            arena.mark(targetLoc, ExplosionArena.IGNORED);
                         }
-                        ObsidianDestroyer.vdebug("Block Damage!! " + targetLoc.toString() + " -dist " + distance);
-                    } else if (event.blockList().contains(targetLoc.getBlock())) {
-                        // Ignore blocks outside of radius
-                        blocksIgnored.add(targetLoc.getBlock());
                     }
                 }
             }
-        }
 
-        // Apply effects with factions
-        final boolean factionsApplied = FactionsIntegration.isUsing() && ConfigManager.getInstance().getHandleOfflineFactions();
-
-        // Bypass list for special handling's
-        final List<Block> bypassBlockList = new ArrayList<Block>();
-
-        // Remove managed blocks
-        for (Block block : blocksDestroyed) {
-            event.blockList().remove(block);
+            // Apply effects with factions
+            final boolean factionsApplied = FactionsIntegration.isUsing() && config.getHandleOfflineFactions();
 
             // Factions bypasses
-            if (factionsApplied && !blockedBlockLocations.contains(block.getLocation())) {
-                if (FactionsIntegration.get().isFactionOffline(block.getLocation())) {
-                    // Add block to bypass list to override
-                    bypassBlockList.add(block);
+            if (factionsApplied) {
+                for (Block block : arena.getDestroyed()) {
+                    if (!arena.isMarked(block, ExplosionArena.BLOCKED) && FactionsIntegration.get().isFactionOffline(block.getLocation())) {
+                        // Add block to bypass list to override
+                        bypassBlockList.add(block);
+                    }
                 }
             }
-        }
-        // Remove ignored blocks
-        for (Block block : blocksIgnored) {
-            event.blockList().remove(block);
-            blocksDestroyed.remove(block);
-        }
-        // Remove blocked blocks
-        for (Location location : blockedBlockLocations) {
-            event.blockList().remove(location.getBlock());
+            // Remove ignored blocks from the destroyed blocks
+            arena.removeIgnoredFromDestroyed();
+            // Remove managed, ignored and blocked blocks
+            for (Iterator<Block> it = event.blockList().iterator(); it.hasNext(); ) {
+                if (arena.isMarked(it.next(), ExplosionArena.DESTROYED | ExplosionArena.IGNORED | ExplosionArena.BLOCKED)) {
+                    it.remove();
+                }
+            }
+            // The event gets its own lists, listeners may keep them
+            destroyedBlocks = new ArrayList<Block>(arena.getDestroyed());
+            blockedLocations = new ArrayList<Location>(arena.getBlocked());
+        } finally {
+            releaseArena(arena);
         }
 
         // Set metadata for run once tracking
@@ -404,7 +868,7 @@ public class ChunkManager {
 
         // ==========================
         // Create a new explosion event from the custom block lists
-        xEntityExplodeEvent explosionEvent = new xEntityExplodeEvent(detonator, detonator.getLocation(), blocksDestroyed, bypassBlockList, blockedBlockLocations, event.getYield());
+        xEntityExplodeEvent explosionEvent = new xEntityExplodeEvent(detonator, detonator.getLocation(), destroyedBlocks, bypassBlockList, blockedLocations, event.getYield());
         // Call the new explosion event
         ObsidianDestroyer.getInstance().getServer().getPluginManager().callEvent(explosionEvent);
 
@@ -425,7 +889,7 @@ public class ChunkManager {
             if (contains(block.getLocation())) {
                 // drops block and reset the durability of the location
                 dropBlockAndResetDurability(block.getLocation());
-            } else if (MaterialManager.getInstance().contains(block.getType().name()) && MaterialManager.getInstance().getDurability(block.getType().name()) <= 1) {
+            } else if (MaterialManager.getInstance().contains(block.getType()) && MaterialManager.getInstance().getDurability(block.getType()) <= 1) {
                 // destroy block and reset the durability of the location
                 destroyBlockAndDropItem(block.getLocation());
             } else if (block.isLiquid() && event.getEntity().hasMetadata("ObbyLiquidEntity")) {
@@ -445,11 +909,11 @@ public class ChunkManager {
         }
 
         // Damage bleeding fix
-        if (ConfigManager.getInstance().getDisableDamageBleeding()) {
+        if (config.getDisableDamageBleeding()) {
 
             // Iterate through the blocks that had an explosion blocked to check if the path was cleared by a current explosion
             for (Location location : explosionEvent.blockedLocationList()) {
-                if (Math.random() < ConfigManager.getInstance().getNextLayerDamageChance() && !Util.isTargetsPathBlocked(location, explosionEvent.getLocation(), false)) {
+                if (Math.random() < config.getNextLayerDamageChance() && !Util.isTargetsPathBlocked(location, explosionEvent.getLocation(), false)) {
 
                     // Apply damage to block material
                     DamageResult result = damageBlock(location, explosionEvent.getEntity());
@@ -466,26 +930,83 @@ public class ChunkManager {
         }
 
         // Debug time for explosion
-        if (ConfigManager.getInstance().getDebug()) {
+        if (config.getDebug()) {
             ObsidianDestroyer.debug("Taken " + (System.currentTimeMillis() - time) + " ms.  For explosion at [ " + detonatorLoc.toString() + " ]");
         }
     }
 
+    /**
+     * Takes a scratch arena for an explosion from the pool, explosions can nest through the events
+     * they call
+     *
+     * @param detonatorLoc the location of the detonation
+     * @param radius       the radius of the explosion
+     * @return the arena, centered on the detonation
+     */
+    private ExplosionArena acquireArena(Location detonatorLoc, int radius) {
+        ExplosionArena arena = arenas.poll();
+        if (arena == null) {
+            arena = new ExplosionArena();
+        }
+        // the corrected block locations can be one block further out
+        arena.reset(detonatorLoc.getBlockX(), detonatorLoc.getBlockY(), detonatorLoc.getBlockZ(), radius + 2);
+        return arena;
+    }
+
+    /**
+     * Returns a scratch arena to the pool
+     *
+     * @param arena the arena of a finished explosion
+     */
+    private void releaseArena(ExplosionArena arena) {
+        arena.clear();
+        arenas.push(arena);
+    }
+
+    /**
+     * Handles a block on an EntityExplodeEvent
+     *
+     * @param at     the location of the block
+     * @param entity the entity that triggered the event
+     * @return DamageResult result of damageBlock attempt
+     */
+    public DamageResult damageBlock(final Location at, Entity entity) {
+        return damageBlock(at, entity, MaterialManager.getInstance().getSource(entity));
+    }
+
     /**
      * Handles a block on an EntityExplodeEvent
      *
      * @param at     the location of the block
      * @param entity the entity that triggered the event
+     * @param source the explosion source of the entity, see {@link MaterialManager#getSource(Entity)}
      * @return DamageResult result of damageBlock attempt
      */
-    public DamageResult damageBlock(final Location at, Entity entity) {
+    public DamageResult damageBlock(final Location at, Entity entity, final int source) {
         if (at == null || entity == null) {
             return DamageResult.NONE;
         }
+        return damageBlock(getWorldId(at.getWorld()), BlockPos.of(at), entity, source);
+    }
+
+    /**
+     * Handles a block on an EntityExplodeEvent
+     *
+     * @param worldId the world id of the block, see {@link #getWorldId(World)}
+     * @param pos     the packed position of the block, see {@link BlockPos}
+     * @param entity  the entity that triggered the event
+     * @param source  the explosion source of the entity, see {@link MaterialManager#getSource(Entity)}
+     * @return DamageResult result of damageBlock attempt
+     */
+    public DamageResult damageBlock(final int worldId, final long pos, Entity entity, final int source) {
+        final WorldPartition partition = getPartition(worldId);
+        if (partition == null || partition.getWorld() == null || entity == null) {
+            return DamageResult.NONE;
+        }
 
         // Null and Air checks
         EntityType eventTypeRep = entity.getType();
-        Block block = at.getBlock();
+        Block block = BlockPos.toBlock(partition.getWorld(), pos);
         if (block == null) {
             return DamageResult.NONE;
         }
@@ -512,50 +1033,42 @@ public class ChunkManager {
         }
 
         // Check bedrock and env
-        if (block.getType() == Material.BEDROCK && ConfigManager.getInstance().getProtectBedrockBorders()) {
-            if (block.getY() <= ConfigManager.getInstance().getBorderToProtectNormal() && block.getWorld().getEnvironment() != Environment.THE_END) {
+        final ConfigSnapshot config = ConfigManager.getInstance().getSnapshot();
+        if (block.getType() == Material.BEDROCK && config.getProtectBedrockBorders()) {
+            if (block.getY() <= config.getBorderToProtectNormal() && block.getWorld().getEnvironment() != Environment.THE_END) {
                 return DamageResult.NONE;
-            } else if (block.getY() >= ConfigManager.getInstance().getBorderToProtectNether() && block.getWorld().getEnvironment() == Environment.NETHER) {
+            } else if (block.getY() >= config.getBorderToProtectNether() && block.getWorld().getEnvironment() == Environment.NETHER) {
                 return DamageResult.NONE;
             }
         }
 
-        // The handled materials listing
+        // The handled materials listing, resolved once for the block
         MaterialManager materials = MaterialManager.getInstance();
+        final DurabilityMaterial material = materials.get(block.getType());
 
         // Just in case the material is in the list and not enabled...
-        if (!materials.getDurabilityEnabled(blockTypeName)) {
+        if (material == null || !material.getEnabled()) {
             return DamageResult.DISABLED;
         }
 
-        if (!materials.isDestructible(blockTypeName)) {
+        if (!material.isDestructible()) {
             return DamageResult.NONE;
         }
 
         // Check explosion types
-        if (eventTypeRep.equals(EntityType.PRIMED_TNT) && !MaterialManager.getInstance().getTntEnabled(blockTypeName)) {
-            return DamageResult.NONE;
-        }
-        if (eventTypeRep.equals(EntityType.CREEPER) && !MaterialManager.getInstance().getCreepersEnabled(blockTypeName)) {
-            return DamageResult.NONE;
-        }
-        if (eventTypeRep.equals(EntityType.WITHER) || eventTypeRep.equals(EntityType.WITHER_SKULL) && !MaterialManager.getInstance().getWithersEnabled(blockTypeName)) {
-            return DamageResult.NONE;
-        }
-        if (eventTypeRep.equals(EntityType.MINECART_TNT) && !MaterialManager.getInstance().getTntMinecartsEnabled(blockTypeName)) {
-            return DamageResult.NONE;
-        }
-        if ((eventTypeRep.equals(EntityType.FIREBALL) || eventTypeRep.equals(EntityType.SMALL_FIREBALL) || eventTypeRep.equals(EntityType.GHAST)) && !MaterialManager.getInstance().getGhastsEnabled(blockTypeName)) {
+        final int damage = materials.getDamage(block.getType(), source);
+        if (damage == DurabilityMaterial.DISABLED) {
             return DamageResult.NONE;
         }
 
         // Durability multiplier hook for Factions
         double durabilityMultiplier = 1D;
         if (FactionsIntegration.isUsing()) {
+            final Location at = BlockPos.toCenter(block.getWorld(), pos);
             if (!FactionsIntegration.get().isExplosionsEnabled(at)) {
                 return DamageResult.NONE;
             }
-            if (ConfigManager.getInstance().getProtectOfflineFactions()) {
+            if (config.getProtectOfflineFactions()) {
                 if (FactionsIntegration.get().isFactionOffline(block.getLocation())) {
                     return DamageResult.NONE;
                 }
@@ -564,32 +1077,32 @@ public class ChunkManager {
         }
 
         // Handle block if the materials durability is greater than one, else destroy the block
-        if ((materials.getDurability(blockTypeName) * durabilityMultiplier) >= 2) {
+        if ((material.getDurability() * durabilityMultiplier) >= 2) {
             // durability is greater than one, get last state of the material location
-            TimerState state = checkDurabilityActive(block.getLocation());
-            if (ConfigManager.getInstance().getEffectsEnabled()) {
+            TimerState state = checkDurabilityActive(worldId, pos);
+            if (config.getEffectsEnabled()) {
                 // display particles effects on damage
                 final double random = Math.random();
-                if (random <= ConfigManager.getInstance().getEffectsChance()) {
-                    block.getWorld().playEffect(at, Effect.MOBSPAWNER_FLAMES, 0);
+                if (random <= config.getEffectsChance()) {
+                    block.getWorld().playEffect(BlockPos.toCenter(block.getWorld(), pos), Effect.MOBSPAWNER_FLAMES, 0);
                 }
             }
             // If timer is running or not active...
             if (state == TimerState.RUN || state == TimerState.INACTIVE) {
                 // Check if current is over the max, else increment damage to durability
-                int currentDurability = getMaterialDurability(block);
-                if (Util.checkIfOverMax(currentDurability, blockTypeName, durabilityMultiplier)) {
-                    currentDurability = (int) Math.round(materials.getDurability(blockTypeName) * 0.50);
+                int currentDurability = getMaterialDurability(worldId, pos);
+                if (Util.checkIfOverMax(currentDurability, block.getType(), durabilityMultiplier)) {
+                    currentDurability = (int) Math.round(material.getDurability() * 0.50);
                 } else {
-                    currentDurability += materials.getDamageTypeAmount(entity, blockTypeName);
+                    currentDurability += damage;
                 }
                 // check if at max, else setup and track the material location
-                if (Util.checkIfMax(currentDurability, blockTypeName, durabilityMultiplier)) {
+                if (Util.checkIfMax(currentDurability, block.getType(), durabilityMultiplier)) {
                     // counter has reached max durability, remove and drop an item
                     return DamageResult.DESTROY;
                 } else {
                     // counter has not reached max durability damage yet
-                    if (!materials.getDurabilityResetTimerEnabled(blockTypeName)) {
+                    if (!material.getResetEnabled()) {
                         // adds a block to be track
                         addBlock(block, currentDurability);
                     } else {
@@ -599,13 +1112,13 @@ public class ChunkManager {
                 }
             } else {
                 // No timers or tracked location, add a new material location
-                if (!materials.getDurabilityResetTimerEnabled(blockTypeName)) {
-                    addBlock(block, materials.getDamageTypeAmount(entity, blockTypeName));
+                if (!material.getResetEnabled()) {
+                    addBlock(block, damage);
                 } else {
-                    startNewTimer(block, materials.getDamageTypeAmount(entity, blockTypeName), state);
+                    startNewTimer(block, damage, state);
                 }
                 // Check if damage is at max for durability
-                if (Util.checkIfMax(materials.getDamageTypeAmount(entity, blockTypeName), blockTypeName, durabilityMultiplier)) {
+                if (Util.checkIfMax(damage, block.getType(), durabilityMultiplier)) {
                     return DamageResult.DESTROY;
                 }
             }
@@ -642,7 +1155,7 @@ public class ChunkManager {
         while (iter.hasNext()) {
             Block block = iter.next();
             // Check if handled and not already checked
-            if (MaterialManager.getInstance().contains(block.getType().name()) && !blocklist.contains(block)) {
+            if (MaterialManager.getInstance().contains(block.getType()) && !blocklist.contains(block)) {
                 blocklist.add(block);
             }
             // Factions bypasses
@@ -679,7 +1192,7 @@ public class ChunkManager {
         iter = explosionEvent.blockList().iterator();
         while (iter.hasNext()) {
             Block block = iter.next();
-            if (MaterialManager.getInstance().contains(block.getType().name()) && !block.getType().equals(Material.AIR)) {
+            if (MaterialManager.getInstance().contains(block.getType()) && !block.getType().equals(Material.AIR)) {
                 DamageResult result = damageBlock(block.getLocation());
                 if (result != DamageResult.NONE && result != DamageResult.CANCELLED) {
                     blocksIgnored.add(block);
@@ -722,10 +1235,10 @@ public class ChunkManager {
                     if (blocklist.contains(targetLoc.getBlock()) || targetLoc.getBlock().getType() == Material.AIR) {
                         continue;
                     }
-                    if (!MaterialManager.getInstance().contains(targetLoc.getBlock().getType().name())) {
+                    if (!MaterialManager.getInstance().contains(targetLoc.getBlock().getType())) {
                         continue;
                     }
-                    if (location.distance(targetLoc) <= Math.min(radius, Util.getMaxDistance(targetLoc.getBlock().getType().name(), radius))) {
+                    if (location.distance(targetLoc) <= Math.min(radius, Util.getMaxDistance(targetLoc.getBlock().getType(), radius))) {
                         DamageResult result = damageBlock(targetLoc.getBlock().getLocation());
                         if (result != DamageResult.NONE && result != DamageResult.CANCELLED) {
                             if (ConfigManager.getInstance().getEffectsEnabled()) {
@@ -783,23 +1296,29 @@ public class ChunkManager {
         }
 
         // Check bedrock and env
-        if (block.getType() == Material.BEDROCK && ConfigManager.getInstance().getProtectBedrockBorders()) {
-            if (block.getY() <= ConfigManager.getInstance().getBorderToProtectNormal() && block.getWorld().getEnvironment() != Environment.THE_END) {
+        final ConfigSnapshot config = ConfigManager.getInstance().getSnapshot();
+        if (block.getType() == Material.BEDROCK && config.getProtectBedrockBorders()) {
+            if (block.getY() <= config.getBorderToProtectNormal() && block.getWorld().getEnvironment() != Environment.THE_END) {
                 return DamageResult.NONE;
-            } else if (block.getY() >= ConfigManager.getInstance().getBorderToProtectNether() && block.getWorld().getEnvironment() == Environment.NETHER) {
+            } else if (block.getY() >= config.getBorderToProtectNether() && block.getWorld().getEnvironment() == Environment.NETHER) {
                 return DamageResult.NONE;
             }
         }
 
-        MaterialManager materials = MaterialManager.getInstance();
+        final MaterialManager materials = MaterialManager.getInstance();
+        final DurabilityMaterial material = materials.get(block.getType());
         // Just in case the material is in the list and not enabled...
-        if (!materials.getDurabilityEnabled(blockTypeName)) {
+        if (material == null || !material.getEnabled()) {
             return DamageResult.DISABLED;
-        } else if (!materials.getCannonsEnabled(blockTypeName)) {
+        }
+        // Without a cannon source cannons are not handled
+        final int source = materials.getCannonSource();
+        final int damage = source < 0 ? DurabilityMaterial.DISABLED : materials.getDamage(block.getType(), source);
+        if (damage == DurabilityMaterial.DISABLED) {
             return DamageResult.DISABLED;
         }
 
-        if (!materials.isDestructible(blockTypeName)) {
+        if (!material.isDestructible()) {
             return DamageResult.NONE;
         }
 
@@ -809,7 +1328,7 @@ public class ChunkManager {
             if (!FactionsIntegration.get().isExplosionsEnabled(at)) {
                 return DamageResult.NONE;
             }
-            if (ConfigManager.getInstance().getProtectOfflineFactions()) {
+            if (config.getProtectOfflineFactions()) {
                 if (FactionsIntegration.get().isFactionOffline(block.getLocation())) {
                     return DamageResult.NONE;
                 }
@@ -818,13 +1337,13 @@ public class ChunkManager {
         }
 
         // Handle block if the materials durability is greater than one, else destroy the block
-        if ((materials.getDurability(blockTypeName) * durabilityMultiplier) >= 2) {
+        if ((material.getDurability() * durabilityMultiplier) >= 2) {
             // durability is greater than one, get last state of the material location
             TimerState state = checkDurabilityActive(block.getLocation());
-            if (ConfigManager.getInstance().getEffectsEnabled()) {
+            if (config.getEffectsEnabled()) {
                 // display particles effects on damage
                 final double random = Math.random();
-                if (random <= ConfigManager.getInstance().getEffectsChance()) {
+                if (random <= config.getEffectsChance()) {
                     block.getWorld().playEffect(at, Effect.MOBSPAWNER_FLAMES, 0);
                 }
             }
@@ -832,19 +1351,19 @@ public class ChunkManager {
             if (state == TimerState.RUN || state == TimerState.INACTIVE) {
                 // Check if current is over the max, else increment damage to durability
                 int currentDurability = getMaterialDurability(block);
-                if (Util.checkIfOverMax(currentDurability, blockTypeName, durabilityMultiplier)) {
-                    currentDurability = (int) Math.round(materials.getDurability(blockTypeName) * 0.50);
+                if (Util.checkIfOverMax(currentDurability, block.getType(), durabilityMultiplier)) {
+                    currentDurability = (int) Math.round(material.getDurability() * 0.50);
                 } else {
-                    currentDurability += materials.getDamageTypeCannonsAmount(blockTypeName);
+                    currentDurability += damage;
                 }
                 // check if at max, else setup and track the material location
-                if (Util.checkIfMax(currentDurability, blockTypeName, durabilityMultiplier)) {
+                if (Util.checkIfMax(currentDurability, block.getType(), durabilityMultiplier)) {
                     // counter has reached max durability, remove and drop an item
                     dropBlockAndResetDurability(at);
                     return DamageResult.DESTROY;
                 } else {
                     // counter has not reached max durability damage yet
-                    if (!materials.getDurabilityResetTimerEnabled(blockTypeName)) {
+                    if (!material.getResetEnabled()) {
                         // adds a block to be tracked
                         addBlock(block, currentDurability);
                     } else {
@@ -854,13 +1373,13 @@ public class ChunkManager {
                 }
             } else {
                 // No timers or tracked location, add a new material location
-                if (!materials.getDurabilityResetTimerEnabled(blockTypeName)) {
-                    addBlock(block, materials.getDamageTypeCannonsAmount(blockTypeName));
+                if (!material.getResetEnabled()) {
+                    addBlock(block, damage);
                 } else {
-                    startNewTimer(block, materials.getDamageTypeCannonsAmount(blockTypeName), state);
+                    startNewTimer(block, damage, state);
                 }
                 // Check if damage is at max for durability
-                if (Util.checkIfMax(materials.getDamageTypeCannonsAmount(blockTypeName), blockTypeName, durabilityMultiplier)) {
+                if (Util.checkIfMax(damage, block.getType(), durabilityMultiplier)) {
                     dropBlockAndResetDurability(at);
                     return DamageResult.DESTROY;
                 }
@@ -901,7 +1420,7 @@ public class ChunkManager {
 
         final Block b = at.getBlock();
 
-        if (!MaterialManager.getInstance().contains(b.getType().name())) {
+        if (!MaterialManager.getInstance().contains(b.getType())) {
             return;
         }
 
@@ -914,7 +1433,7 @@ public class ChunkManager {
         final Collection<ItemStack> bd = at.getBlock().getDrops();
 
         final double random = Math.random();
-        final double chance = MaterialManager.getInstance().getChanceToDropBlock(b.getType().name());
+        final double chance = MaterialManager.getInstance().getChanceToDropBlock(b.getType());
 
         // changes original block to Air block
         b.setType(Material.AIR);
@@ -933,23 +1452,86 @@ public class ChunkManager {
     }
 
     /**
-     * Reset all durabilites
+     * Resets durabilities, see {@link DurabilityReset}. The loaded chunks are cleared right away,
+     * the stored chunks are reset in the background. Resetting a whole world that is not loaded
+     * removes its directory in the background too, once the partition of its last load is closed.
      *
-     * @return time taken in milliseconds
+     * @param reset the reset
      */
-    public long resetAllDurabilities() {
-        final long time = System.currentTimeMillis();
-        for (File odr : durabilityDir.listFiles()) {
-            if (odr.getName().endsWith(".odr")) {
-                if (!odr.delete()) {
-                    ObsidianDestroyer.LOG.log(Level.WARNING, "Failed to remove file {0}", odr.getName());
+    public void resetDurabilities(final DurabilityReset reset) {
+        if (snapshot != null) {
+            // read before the writes of the reset are queued
+            if (reset.getWorld() == null) {
+                snapshot.preserveAll();
+            } else {
+                snapshot.preserveWorld(reset.getWorld());
+            }
+        }
+        for (WorldPartition partition : partitions.values()) {
+            if (reset.getWorld() == null || reset.getWorld().equals(partition.getWorldName())) {
+                partition.reset(reset);
+            }
+        }
+        if (!reset.isArea()) {
+            // worlds that are not loaded or disabled have no partition
+            for (Iterator<Future<?>> it = deleting.values().iterator(); it.hasNext(); ) {
+                if (it.next().isDone()) {
+                    it.remove();
+                }
+            }
+            File[] worldDirs = durabilityDir.listFiles();
+            if (worldDirs != null) {
+                final long closeTimeout = TimeUnit.SECONDS.toNanos(ConfigManager.getInstance().getShutdownDeadline());
+                for (final File worldDir : worldDirs) {
+                    final String world = worldDir.getName();
+                    if (!worldDir.isDirectory() || partitions.containsKey(world) || (reset.getWorld() != null && !reset.getWorld().equals(world))) {
+                        continue;
+                    }
+                    if (resetExecutor == null) {
+                        resetExecutor = Executors.newSingleThreadExecutor(Util.threadFactory("ObsidianDestroyer Reset"));
+                    }
+                    final WorldPartition previous = closing.remove(world);
+                    reset.addBatch(0);
+                    deleting.put(world, resetExecutor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (previous != null) {
+                                previous.awaitClose(System.nanoTime() + closeTimeout);
+                            }
+                            List<String> failed = new ArrayList<String>();
+                            deleteDirectory(worldDir, failed);
+                            for (String name : failed) {
+                                ObsidianDestroyer.LOG.log(Level.WARNING, "Failed to remove file {0}", name);
+                            }
+                            reset.batchDone(0, !failed.isEmpty());
+                        }
+                    }));
+                }
+            }
+        }
+        reset.start();
+    }
+
+    /**
+     * Removes a directory and everything in it
+     *
+     * @param directory the directory to remove
+     * @param failed    the list to add the paths of the files that could not be removed to
+     */
+    private static void deleteDirectory(File directory, List<String> failed) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file, failed);
+                } else if (!file.delete()) {
+                    failed.add(file.getPath());
                 }
             }
         }
-        for (ChunkWrapper chunk : chunks.values()) {
-            chunk.removeKeys();
+        if (!directory.delete() && directory.exists()) {
+            failed.add(directory.getPath());
         }
-        return time;
     }
 
     /**
@@ -967,7 +1549,7 @@ public class ChunkManager {
             removeBlock(block);
         }
 
-        addBlock(block, damage, MaterialManager.getInstance().getDurabilityResetTime(block.getType().name()));
+        addBlock(block, damage, MaterialManager.getInstance().getDurabilityResetTime(block.getType()));
     }
 
     /**
@@ -980,40 +1562,36 @@ public class ChunkManager {
         if (location == null) {
             return TimerState.DEAD;
         }
+        return checkDurabilityActive(getWorldId(location.getWorld()), BlockPos.of(location));
+    }
 
-        if (!contains(location)) {
+    /**
+     * Check if there is an active durability reset
+     *
+     * @param worldId the world id of the block, see {@link #getWorldId(World)}
+     * @param pos     the packed position of the block, see {@link BlockPos}
+     * @return the state of the durability timer object
+     */
+    public TimerState checkDurabilityActive(int worldId, long pos) {
+        final ChunkWrapper chunk = getLoadedWrapper(worldId, pos);
+        if (chunk == null) {
             return TimerState.DEAD;
         }
-        if (!MaterialManager.getInstance().getDurabilityResetTimerEnabled(location.getBlock().getType().name())) {
-            return TimerState.INACTIVE;
+        final long value = chunk.getValue(ChunkWrapper.toRepresentation(pos));
+        if (value == DurabilityMap.ABSENT) {
+            return TimerState.DEAD;
         }
-        final long currentTime = System.currentTimeMillis();
-        final ChunkWrapper chunk = getWrapper(location.getChunk());
-        if (chunk == null) {
-            if (ConfigManager.getInstance().getVerbose() || ConfigManager.getInstance().getDebug()) {
-                ObsidianDestroyer.LOG.severe("The requested chunk appears to be null  D:");
-            }
+        final World world = getPartition(worldId).getWorld();
+        if (world == null) {
             return TimerState.DEAD;
         }
-        final long time = chunk.getDurabilityTime(location);
-        if (currentTime > time) {
-            if (ConfigManager.getInstance().getMaterialsRegenerateOverTime()) {
-                int currentDurability = chunk.getDurability(location);
-                final long regenTime = MaterialManager.getInstance().getDurabilityResetTime(location.getBlock().getType().name());
-                final long result = currentTime - time;
-                final int amount = Math.max(1, Math.round((float) result / regenTime));
-                currentDurability -= amount;
-                if (currentDurability <= 0) {
-                    chunk.removeKey(location);
-                    return TimerState.END;
-                } else {
-                    startNewTimer(location.getBlock(), currentDurability, TimerState.RUN);
-                    return TimerState.RUN;
-                }
-            } else {
-                removeLocation(location);
-                return TimerState.END;
-            }
+        final Block block = BlockPos.toBlock(world, pos);
+        if (!MaterialManager.getInstance().getDurabilityResetTimerEnabled(block.getType())) {
+            return TimerState.INACTIVE;
+        }
+        final long currentTime = System.currentTimeMillis();
+        if (currentTime > DurabilityMap.time(value)) {
+            return resetDurability(chunk, block, value, currentTime);
         }
         return TimerState.RUN;
     }
@@ -1043,64 +1621,376 @@ public class ChunkManager {
             return 0;
         }
 
-        if (checkDurabilityActive(location) != TimerState.RUN && !contains(location)) {
+        return getMaterialDurability(getWorldId(location.getWorld()), BlockPos.of(location));
+    }
+
+    /**
+     * Gets the Material durability of a block
+     *
+     * @param worldId the world id of the block, see {@link #getWorldId(World)}
+     * @param pos     the packed position of the block, see {@link BlockPos}
+     * @return the durability value
+     */
+    public int getMaterialDurability(int worldId, long pos) {
+        if (checkDurabilityActive(worldId, pos) != TimerState.RUN && !contains(worldId, pos)) {
             return 0;
-        } else {
-            return getWrapper(location.getChunk()) != null ? getWrapper(location.getChunk()).getDurability(location) : 0;
         }
+        final ChunkWrapper chunk = getLoadedWrapper(worldId, pos);
+        return chunk != null ? chunk.getDurability(ChunkWrapper.toRepresentation(pos)) : 0;
     }
 
     /**
-     * Loads the world that will be ignored
+     * Loads the world that will be ignored. Worlds that are disabled now are saved and unloaded,
+     * worlds that are enabled now are loaded.
      */
     public void loadDisabledWorlds() {
         disabledWorlds = ConfigManager.getInstance().getDisabledWorlds();
+        for (WorldPartition partition : new ArrayList<WorldPartition>(partitions.values())) {
+            if (disabledWorlds.contains(partition.getWorldName())) {
+                closePartition(partition);
+            }
+        }
+        for (World world : ObsidianDestroyer.getInstance().getServer().getWorlds()) {
+            loadWorld(world);
+        }
     }
 
     /**
-     * Loads the chunk manager
+     * Loads the chunk manager. The durabilities of all loaded chunks are read in parallel, one task
+     * per region file, and the wrappers are published once every read is done.
      */
     public void load() {
-        loadDisabledWorlds();
-        chunks.clear();
+        disabledWorlds = ConfigManager.getInstance().getDisabledWorlds();
+        for (WorldPartition partition : new ArrayList<WorldPartition>(partitions.values())) {
+            if (disabledWorlds.contains(partition.getWorldName())) {
+                closePartition(partition);
+            }
+        }
+        final long time = System.currentTimeMillis();
+        List<ChunkWrapper> loaded = new ArrayList<ChunkWrapper>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
         for (World world : ObsidianDestroyer.getInstance().getServer().getWorlds()) {
+            if (disabledWorlds.contains(world.getName())) {
+                continue;
+            }
+            WorldPartition partition = partitions.get(world.getName());
+            if (partition == null) {
+                partition = openPartition(world.getName());
+            }
+            partition.clearWrappers();
+            LongObjectMap<List<ChunkWrapper>> byRegion = new LongObjectMap<List<ChunkWrapper>>();
             for (Chunk chunk : world.getLoadedChunks()) {
-                loadChunk(chunk);
+                if (!partition.isStored(chunk.getX(), chunk.getZ())) {
+                    continue;
+                }
+                ChunkWrapper wrapper = partition.newWrapper(chunk);
+                loaded.add(wrapper);
+                final long region = LongHashSet.chunkKey(ODRRegion.toRegion(chunk.getX()), ODRRegion.toRegion(chunk.getZ()));
+                List<ChunkWrapper> wrappers = byRegion.get(region);
+                if (wrappers == null) {
+                    wrappers = new ArrayList<ChunkWrapper>();
+                    byRegion.put(region, wrappers);
+                }
+                wrappers.add(wrapper);
+            }
+            final DurabilityStore store = partition.getStore();
+            for (final List<ChunkWrapper> wrappers : byRegion.values()) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        // chunks of one region are read in one batch
+                        long[] keys = new long[wrappers.size()];
+                        for (int i = 0; i < keys.length; i++) {
+                            keys[i] = LongHashSet.chunkKey(wrappers.get(i).getChunkX(), wrappers.get(i).getChunkZ());
+                        }
+                        LongObjectMap<byte[]> data = store.getAll(wrappers.get(0).getWorldName(), keys);
+                        for (int i = 0; i < keys.length; i++) {
+                            wrappers.get(i).load(data.get(keys[i]));
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), Util.threadFactory("ObsidianDestroyer Warm Start"));
+        try {
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed loading chunk durabilities!");
+            e.getCause().printStackTrace();
+        } finally {
+            executor.shutdown();
         }
+
+        for (ChunkWrapper wrapper : loaded) {
+            partitions.get(wrapper.getWorldName()).putWrapper(wrapper);
+        }
+        ObsidianDestroyer.LOG.log(Level.INFO, "Loaded durabilities of {0} chunks from {1} regions in {2} worlds in {3} ms.", new Object[]{loaded.size(), tasks.size(), partitions.size(), System.currentTimeMillis() - time});
     }
 
     /**
-     * Saves the chunk manager
+     * Saves the chunk manager and waits for all pending writes
      */
     public void save() {
+        if (autosaveTask != null) {
+            // everything is written below, which completes the running cycle as well
+            finishAutosave();
+        }
         doneSave = false;
-        Double max = ((Integer) chunks.size()).doubleValue();
-        Double done = 0.0;
-        for (String key : chunks.keySet()) {
-            ChunkWrapper w = chunks.get(key);
-            w.save(false, true);
-            done++;
-            //this.percent = ((Double) (done / max)).intValue();
-        }
-        chunks.clear();
+        percent = 0;
+        int max = 0;
+        for (WorldPartition partition : partitions.values()) {
+            max += partition.getLoadedChunkCount();
+        }
+        int done = 0;
+        for (WorldPartition partition : partitions.values()) {
+            for (ChunkWrapper w : partition.getWrappers()) {
+                if (w.isLoading()) {
+                    // never read, so there is nothing new to write
+                    w.cancelLoad();
+                } else {
+                    w.awaitLoad();
+                    queueSave(partition, w, true);
+                }
+                done++;
+                this.percent = (done * 100) / max;
+            }
+            partition.clearWrappers();
+        }
+        for (WorldPartition partition : partitions.values()) {
+            partition.release();
+        }
+        percent = 100;
         doneSave = true;
     }
 
     /**
-     * Loads a chunk into the chunk manager
+     * Saves the chunk manager and stops the I/O executors. Changed chunks are copied on the main
+     * thread and written in parallel, one task per region of 32x32 chunks. The chunks of a world
+     * that are not written by the shutdown deadline go into an emergency file in the directory of
+     * the world, which is applied when the world is loaded again.
+     */
+    public void shutdown() {
+        if (snapshot != null) {
+            snapshot.abort();
+        }
+        if (autosaveTask != null) {
+            finishAutosave();
+        }
+        final long time = System.currentTimeMillis();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ConfigManager.getInstance().getShutdownDeadline());
+        int count = 0;
+        Map<WorldPartition, LongObjectMap<List<FlushEntry>>> byPartition = new HashMap<WorldPartition, LongObjectMap<List<FlushEntry>>>();
+        for (WorldPartition partition : partitions.values()) {
+            LongObjectMap<List<FlushEntry>> byRegion = new LongObjectMap<List<FlushEntry>>();
+            byPartition.put(partition, byRegion);
+            for (ChunkWrapper w : partition.getWrappers()) {
+                if (w.isLoading()) {
+                    // never read, so there is nothing new to write
+                    w.cancelLoad();
+                    continue;
+                }
+                w.awaitLoad();
+                if (!w.isDirty()) {
+                    partition.countWrite(false);
+                    continue;
+                }
+                FlushEntry entry = new FlushEntry(w, w.snapshot());
+                partition.updateManifest(w);
+                partition.countWrite(true);
+                count++;
+                final long region = LongHashSet.chunkKey(ODRRegion.toRegion(w.getChunkX()), ODRRegion.toRegion(w.getChunkZ()));
+                List<FlushEntry> regionEntries = byRegion.get(region);
+                if (regionEntries == null) {
+                    regionEntries = new ArrayList<FlushEntry>();
+                    byRegion.put(region, regionEntries);
+                }
+                regionEntries.add(entry);
+            }
+            partition.clearWrappers();
+            partition.writeManifest(partition.copyManifest());
+        }
+        partitions.clear();
+        for (WorldPartition partition : closing.values()) {
+            if (!partition.awaitClose(deadline)) {
+                ObsidianDestroyer.LOG.log(Level.WARNING, "Timed out saving world {0}!", partition.getWorldName());
+            }
+        }
+        closing.clear();
+        if (resetExecutor != null) {
+            resetExecutor.shutdown();
+            if (!awaitTermination(resetExecutor, deadline)) {
+                ObsidianDestroyer.LOG.log(Level.WARNING, "Timed out removing the durabilities of reset worlds!");
+            }
+            resetExecutor = null;
+        }
+        deleting.clear();
+
+        // pending writes hold older copies, so they have to land first
+        final Map<WorldPartition, Boolean> drained = new HashMap<WorldPartition, Boolean>();
+        int regionCount = 0;
+        for (Map.Entry<WorldPartition, LongObjectMap<List<FlushEntry>>> partition : byPartition.entrySet()) {
+            drained.put(partition.getKey(), awaitTermination(partition.getKey().getIOExecutor(), deadline));
+            regionCount += partition.getValue().size();
+        }
+        ExecutorService executor = null;
+        if (regionCount > 0) {
+            final ConcurrentMap<WorldPartition, Long> worldTimes = new ConcurrentHashMap<WorldPartition, Long>();
+            final long start = System.nanoTime();
+            executor = Executors.newFixedThreadPool(Math.min(regionCount, Runtime.getRuntime().availableProcessors()), Util.threadFactory("ObsidianDestroyer Flush"));
+            for (final Map.Entry<WorldPartition, LongObjectMap<List<FlushEntry>>> partition : byPartition.entrySet()) {
+                if (!drained.get(partition.getKey())) {
+                    continue;
+                }
+                final AtomicInteger remaining = new AtomicInteger(partition.getValue().size());
+                for (final List<FlushEntry> regionEntries : partition.getValue().values()) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (FlushEntry entry : regionEntries) {
+                                if (System.nanoTime() - deadline >= 0) {
+                                    return;
+                                }
+                                entry.written = entry.wrapper.write(entry.keys);
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                worldTimes.put(partition.getKey(), System.nanoTime() - start);
+                            }
+                        }
+                    });
+                }
+            }
+            if (!awaitTermination(executor, deadline)) {
+                // tasks stop before their next chunk, let the writes in progress finish before closing the stores
+                awaitTermination(executor, System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            }
+            for (Map.Entry<WorldPartition, LongObjectMap<List<FlushEntry>>> partition : byPartition.entrySet()) {
+                int chunkCount = 0;
+                for (List<FlushEntry> regionEntries : partition.getValue().values()) {
+                    chunkCount += regionEntries.size();
+                }
+                if (chunkCount == 0) {
+                    continue;
+                }
+                Long worldTime = worldTimes.get(partition.getKey());
+                if (worldTime != null) {
+                    ObsidianDestroyer.LOG.log(Level.INFO, "Saved {0} chunks of world {1} in {2} ms.", new Object[]{chunkCount, partition.getKey().getWorldName(), TimeUnit.NANOSECONDS.toMillis(worldTime)});
+                } else {
+                    ObsidianDestroyer.LOG.log(Level.WARNING, "Timed out saving {0} chunks of world {1}!", new Object[]{chunkCount, partition.getKey().getWorldName()});
+                }
+            }
+        }
+        for (Map.Entry<WorldPartition, LongObjectMap<List<FlushEntry>>> partition : byPartition.entrySet()) {
+            boolean written = drained.get(partition.getKey());
+            for (List<FlushEntry> regionEntries : partition.getValue().values()) {
+                for (FlushEntry entry : regionEntries) {
+                    written &= entry.written;
+                }
+            }
+            if (!written) {
+                ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed writing all durability data of world {0} before the shutdown deadline!", partition.getKey().getWorldName());
+                writeEmergencyFile(partition.getKey(), partition.getValue().values());
+            }
+            partition.getKey().shutdown(written);
+        }
+        if (journalExecutor != null) {
+            journalExecutor.shutdown();
+        }
+        ObsidianDestroyer.LOG.log(Level.INFO, "Saved durabilities of {0} chunks in {1} ms.", new Object[]{count, System.currentTimeMillis() - time});
+    }
+
+    /**
+     * Writes every chunk of a world that was not written into the store into an emergency file
+     *
+     * @param partition the partition of the world
+     * @param regions   the chunks to save, per region
+     */
+    private void writeEmergencyFile(WorldPartition partition, Collection<List<FlushEntry>> regions) {
+        try {
+            ODRArchive file = ODRArchive.emergency(partition.getDirectory());
+            for (List<FlushEntry> entries : regions) {
+                for (FlushEntry entry : entries) {
+                    if (!entry.written) {
+                        file.add(entry.wrapper.getWorldName(), entry.wrapper.getChunkX(), entry.wrapper.getChunkZ(), entry.wrapper.encode(entry.keys));
+                    }
+                }
+            }
+            file.close();
+            ObsidianDestroyer.LOG.log(Level.WARNING, "Wrote {0} chunks into an emergency file, they are applied on the next start.", file.getChunkCount());
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed writing the emergency durability file of world {0}!", partition.getWorldName());
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean awaitTermination(ExecutorService executor, long deadline) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the durabilities of every loaded world and writes it into one archive in
+     * the snapshots folder, see {@link DurabilitySnapshot}. Only the copy of the loaded chunks is
+     * taken on the main thread.
+     *
+     * @param callback run on the main thread once the snapshot is done, may be null
+     * @return the snapshot, or null if a snapshot is still being written
+     * @throws IOException thrown if the archive can not be created
+     */
+    public DurabilitySnapshot createSnapshot(final Runnable callback) throws IOException {
+        if (snapshot != null && !snapshot.isDone()) {
+            return null;
+        }
+        File snapshotDir = new File(ObsidianDestroyer.getInstance().getDataFolder(), "snapshots");
+        if (!snapshotDir.exists()) {
+            snapshotDir.mkdirs();
+        }
+        File file = new File(snapshotDir, "durabilities-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ODRArchive.EXTENSION);
+        final DurabilitySnapshot current = new DurabilitySnapshot(file, partitions.values());
+        snapshot = current;
+        Util.threadFactory("ObsidianDestroyer Snapshot").newThread(new Runnable() {
+            @Override
+            public void run() {
+                current.write();
+                if (callback != null && ObsidianDestroyer.getInstance().isEnabled()) {
+                    ObsidianDestroyer.getInstance().getServer().getScheduler().runTask(ObsidianDestroyer.getInstance(), callback);
+                }
+            }
+        }).start();
+        return current;
+    }
+
+    /**
+     * Loads a chunk into the chunk manager. Only chunks with stored durabilities get a wrapper; the
+     * chunk data is read on the I/O executor of the world and any access through the chunk manager
+     * waits for the read to complete. Reads are queued behind pending saves, so a chunk that is
+     * loaded again right after an unload always sees its saved data. Chunks of disabled worlds are
+     * ignored.
      *
      * @param chunk the chunk to load
      */
     public void loadChunk(Chunk chunk) {
-        if (chunk == null) {
+        WorldPartition partition = chunk != null ? getPartition(chunk.getWorld()) : null;
+        if (partition == null || !partition.isStored(chunk.getX(), chunk.getZ())) {
             return;
         }
 
-        String str = chunkToString(chunk);
-        ChunkWrapper wrapper = new ChunkWrapper(chunk, durabilityDir);
-        wrapper.load();
-        chunks.put(str, wrapper);
+        ChunkWrapper wrapper = partition.newWrapper(chunk);
+        wrapper.loadAsync(partition.getIOExecutor());
+        ChunkWrapper previous = partition.putWrapper(wrapper);
+        if (previous != null) {
+            previous.cancelLoad();
+        }
     }
 
     /**
@@ -1109,24 +1999,86 @@ public class ChunkManager {
      * @param chunk the chunk to unload
      */
     public void unloadChunk(Chunk chunk) {
-        if (chunk == null) {
+        WorldPartition partition = chunk != null ? getPartition(chunk.getWorld()) : null;
+        if (partition == null || !partition.isWrapped(chunk.getX(), chunk.getZ())) {
             return;
         }
 
-        String key = chunkToString(chunk);
-        ChunkWrapper wrapper = chunks.get(key);
+        ChunkWrapper wrapper = partition.removeWrapper(chunk.getX(), chunk.getZ());
         if (wrapper != null) {
-            wrapper.save(false, false);
-            chunks.remove(key);
+            if (wrapper.isLoading()) {
+                // never read, so there is nothing new to write
+                wrapper.cancelLoad();
+            } else {
+                wrapper.awaitLoad();
+                // dropped, so the keys are only needed for the write
+                queueSave(partition, wrapper, true);
+            }
         }
     }
 
-    public String chunkToString(Chunk chunk) {
-        if (chunk == null) {
-            return "";
+    /**
+     * Queues the write of a wrapper, after the running snapshot read the data it replaces
+     *
+     * @param partition the partition of the wrapper
+     * @param wrapper   the wrapper to save
+     * @param clear     set to true to clear the wrapper after the copy is taken
+     */
+    private void queueSave(WorldPartition partition, ChunkWrapper wrapper, boolean clear) {
+        if (snapshot != null) {
+            snapshot.preserve(wrapper.getWorldName(), wrapper.getChunkX(), wrapper.getChunkZ());
+        }
+        partition.queueSave(wrapper, clear);
+    }
+
+    private ChunkWrapper getLoadedWrapper(int worldId, long pos) {
+        return getLoadedWrapper(getPartition(worldId), BlockPos.chunkX(pos), BlockPos.chunkZ(pos));
+    }
+
+    /**
+     * Gets the wrapper of a chunk, waiting for a pending load of it
+     *
+     * @param world  the world
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the loaded wrapper or null
+     */
+    private ChunkWrapper getLoadedWrapper(World world, int chunkX, int chunkZ) {
+        return getLoadedWrapper(getPartition(world), chunkX, chunkZ);
+    }
+
+    private ChunkWrapper getLoadedWrapper(WorldPartition partition, int chunkX, int chunkZ) {
+        if (partition == null || !partition.isWrapped(chunkX, chunkZ)) {
+            return null;
         }
+        ChunkWrapper wrapper = partition.getWrapper(chunkX, chunkZ);
+        if (wrapper != null) {
+            wrapper.awaitLoad();
+        }
+        return wrapper;
+    }
 
-        return chunk.getX() + "." + chunk.getZ() + "." + chunk.getWorld().getName();
+    /**
+     * Gets the wrapper of a chunk, creating it for a chunk without stored durabilities
+     *
+     * @param chunk the chunk
+     * @return the loaded wrapper, or null if the plugin is disabled in the world
+     */
+    private ChunkWrapper getOrCreateWrapper(Chunk chunk) {
+        WorldPartition partition = getPartition(chunk.getWorld());
+        if (partition == null) {
+            return null;
+        }
+        if (!partition.isWrapped(chunk.getX(), chunk.getZ())) {
+            if (partition.isStored(chunk.getX(), chunk.getZ())) {
+                loadChunk(chunk);
+            } else {
+                partition.putWrapper(partition.newWrapper(chunk));
+            }
+        }
+        ChunkWrapper wrapper = partition.getWrapper(chunk.getX(), chunk.getZ());
+        wrapper.awaitLoad();
+        return wrapper;
     }
 
     /**
@@ -1140,12 +2092,10 @@ public class ChunkManager {
             return;
         }
 
-        String c = chunkToString(block.getChunk());
-        if (!chunks.containsKey(c)) {
-            loadChunk(block.getChunk());
+        ChunkWrapper chunk = getOrCreateWrapper(block.getChunk());
+        if (chunk != null) {
+            chunk.addBlock(damage, block);
         }
-        ChunkWrapper chunk = chunks.get(c);
-        chunk.addBlock(damage, block);
     }
 
     /**
@@ -1160,13 +2110,10 @@ public class ChunkManager {
             return;
         }
 
-        String c = chunkToString(block.getChunk());
-        if (!chunks.containsKey(c)) {
-            loadChunk(block.getChunk());
+        ChunkWrapper chunk = getOrCreateWrapper(block.getChunk());
+        if (chunk != null) {
+            chunk.addBlockTimer(damage, time + System.currentTimeMillis(), block);
         }
-        ChunkWrapper chunk = chunks.get(c);
-        time += System.currentTimeMillis();
-        chunk.addBlockTimer(damage, time, block);
     }
 
     /**
@@ -1192,10 +2139,19 @@ public class ChunkManager {
             return;
         }
 
-        String c = chunkToString(location.getChunk());
-        if (chunks.containsKey(c)) {
-            ChunkWrapper chunk = chunks.get(c);
-            chunk.removeKey(location);
+        removeLocation(getWorldId(location.getWorld()), BlockPos.of(location));
+    }
+
+    /**
+     * Remove a block from the chunk
+     *
+     * @param worldId the world id of the block, see {@link #getWorldId(World)}
+     * @param pos     the packed position of the block, see {@link BlockPos}
+     */
+    public void removeLocation(int worldId, long pos) {
+        ChunkWrapper chunk = getLoadedWrapper(worldId, pos);
+        if (chunk != null) {
+            chunk.removeKey(ChunkWrapper.toRepresentation(pos));
         }
     }
 
@@ -1216,30 +2172,33 @@ public class ChunkManager {
      * @return true if location found within chunk
      */
     public boolean contains(Location location) {
-        if (location == null) {
-            return false;
-        }
-        String c = chunkToString(location.getChunk());
-        ChunkWrapper chunk = chunks.get(c);
+        return location != null && contains(getWorldId(location.getWorld()), BlockPos.of(location));
+    }
+
+    /**
+     * Does the chunk contain this block
+     *
+     * @param worldId the world id of the block, see {@link #getWorldId(World)}
+     * @param pos     the packed position of the block, see {@link BlockPos}
+     * @return true if the block is found within its chunk
+     */
+    public boolean contains(int worldId, long pos) {
+        ChunkWrapper chunk = getLoadedWrapper(worldId, pos);
 
-        return chunk != null && chunk.contains(location);
+        return chunk != null && chunk.contains(ChunkWrapper.toRepresentation(pos));
     }
 
     /**
      * Gets the chunk wrapper from a chunk
      *
      * @param chunk the chunk to get a wrapper from
-     * @return the ChunkWrapper that belongs to the chunk.
+     * @return the ChunkWrapper that belongs to the chunk, or null if the chunk has no tracked blocks
      */
     public ChunkWrapper getWrapper(Chunk chunk) {
         if (chunk == null) {
             return null;
         }
-        String c = chunkToString(chunk);
-        if (!chunks.containsKey(c)) {
-            loadChunk(chunk);
-        }
-        return chunks.get(c);
+        return getLoadedWrapper(chunk.getWorld(), chunk.getX(), chunk.getZ());
     }
 
     /**
@@ -1252,12 +2211,121 @@ public class ChunkManager {
     }
 
     /**
-     * Gets a list of worlds the plugin will ignore
+     * Gets the progress of the running save or autosave cycle
+     *
+     * @return percentage of the loaded chunks handled
+     */
+    public int getSavePercent() {
+        return this.percent;
+    }
+
+    /**
+     * Gets the partitions of the loaded worlds the plugin is enabled in
+     *
+     * @return the partitions
+     */
+    public Collection<WorldPartition> getPartitions() {
+        return Collections.unmodifiableCollection(partitions.values());
+    }
+
+    /**
+     * Gets the amount of chunks currently wrapped
+     *
+     * @return amount of loaded chunk wrappers
+     */
+    public int getLoadedChunkCount() {
+        int count = 0;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getLoadedChunkCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of blocks tracked in all loaded chunks
+     *
+     * @return amount of tracked blocks
+     */
+    public int getTrackedBlockCount() {
+        int count = 0;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getTrackedBlockCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of chunks with stored durabilities in the loaded worlds
+     *
+     * @return amount of stored chunks
+     */
+    public int getStoredChunkCount() {
+        int count = 0;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getStoredChunkCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of stored durabilities in the loaded worlds, as of the last save of every chunk
+     *
+     * @return amount of stored blocks
+     */
+    public long getStoredBlockCount() {
+        long count = 0L;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getStoredBlockCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of chunk writes done since the plugin was enabled
+     *
+     * @return amount of chunk writes
+     */
+    public long getWritesQueued() {
+        long count = closedWritesQueued;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getWritesQueued();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of chunk writes skipped because the chunk was unchanged
+     *
+     * @return amount of avoided chunk writes
+     */
+    public long getWritesAvoided() {
+        long count = closedWritesAvoided;
+        for (WorldPartition partition : partitions.values()) {
+            count += partition.getWritesAvoided();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the set of worlds the plugin will ignore
      *
-     * @return list of world names to ignore
+     * @return set of world names to ignore
      */
-    public List<String> getDisabledWorlds() {
+    public Set<String> getDisabledWorlds() {
         return disabledWorlds;
     }
 
-}
\ No newline at end of file
+    /**
+     * Copy of a changed chunk written on shutdown
+     */
+    private static class FlushEntry {
+        private final ChunkWrapper wrapper;
+        private final DurabilityMap keys;
+        private volatile boolean written = false;
+
+        private FlushEntry(ChunkWrapper wrapper, DurabilityMap keys) {
+            this.wrapper = wrapper;
+            this.keys = keys;
+        }
+    }
+}
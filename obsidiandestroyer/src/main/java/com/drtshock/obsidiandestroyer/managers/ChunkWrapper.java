@@ -1,40 +1,54 @@
 package com.drtshock.obsidiandestroyer.managers;
 
 import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
+import com.drtshock.obsidiandestroyer.datatypes.BlockPos;
+import com.drtshock.obsidiandestroyer.datatypes.DurabilityMap;
 import com.drtshock.obsidiandestroyer.datatypes.Key;
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.TimingWheel;
+import com.drtshock.obsidiandestroyer.datatypes.io.DurabilityStore;
 import com.drtshock.obsidiandestroyer.datatypes.io.ODRFile;
-import org.bukkit.Bukkit;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRJournal;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.block.Block;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 public class ChunkWrapper {
 
     private final int chunkX, chunkZ;
     private final String world;
-    private final File durabilitiesDir;
-    private ConcurrentMap<Integer, Key> durabilities = new ConcurrentHashMap<Integer, Key>();
+    private final DurabilityStore store;
+    private final ODRJournal journal;
+    private final TimingWheel expiries;
+    private final DurabilityMap durabilities = new DurabilityMap();
+    private volatile Future<?> loading;
+    private volatile int modifications = 0;
+    private volatile int savedModifications = 0;
+    private volatile int storedRecords = 0;
+    private volatile long storedMaxExpiry = 0L;
 
     /**
      * Wraps a chunk with a ChunkWrapper
      *
-     * @param chunk           the chunk to wrap
-     * @param durabilitiesDir the directory to store this wrapper in
+     * @param chunk    the chunk to wrap
+     * @param store    the store to save this wrapper in
+     * @param journal  the journal to log changes to, or null if changes are not logged
+     * @param expiries the timing wheel to schedule durability timers in
      */
-    ChunkWrapper(Chunk chunk, File durabilitiesDir) {
+    ChunkWrapper(Chunk chunk, DurabilityStore store, ODRJournal journal, TimingWheel expiries) {
         this.chunkX = chunk.getX();
         this.chunkZ = chunk.getZ();
         this.world = chunk.getWorld().getName();
-        this.durabilitiesDir = durabilitiesDir;
+        this.store = store;
+        this.journal = journal;
+        this.expiries = expiries;
     }
 
     /**
@@ -47,56 +61,188 @@ public class ChunkWrapper {
     }
 
     /**
-     * Gets the Key of the location
+     * Gets the chunk x coordinate
+     *
+     * @return the chunk x coordinate
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * Gets the chunk z coordinate
+     *
+     * @return the chunk z coordinate
+     */
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /**
+     * Checks if the chunk has data in the store, or will have once the queued writes are done
+     *
+     * @return true if the chunk has stored durabilities
+     */
+    public boolean isStored() {
+        return storedRecords > 0;
+    }
+
+    /**
+     * Gets the amount of records in the store, once the queued writes are done
+     *
+     * @return the amount of stored durabilities
+     */
+    public int getStoredRecords() {
+        return storedRecords;
+    }
+
+    /**
+     * Gets the latest durability reset time in the store, once the queued writes are done
+     *
+     * @return the latest stored reset time
+     */
+    public long getStoredMaxExpiry() {
+        return storedMaxExpiry;
+    }
+
+    /**
+     * Gets the representation of a block position within its chunk
+     *
+     * @param x the block x location
+     * @param y the block y location
+     * @param z the block z location
+     * @return the representation, unique for every block of a chunk
+     */
+    public static int toRepresentation(int x, int y, int z) {
+        return (y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Gets the block x coordinate of a representation
+     *
+     * @param chunkX         the chunk x coordinate
+     * @param representation the representation
+     * @return the block x coordinate
+     */
+    public static int toX(int chunkX, int representation) {
+        return (chunkX << 4) | (representation & 15);
+    }
+
+    /**
+     * Gets the block y coordinate of a representation
+     *
+     * @param representation the representation
+     * @return the block y coordinate
+     */
+    public static int toY(int representation) {
+        return representation >> 8;
+    }
+
+    /**
+     * Gets the block z coordinate of a representation
+     *
+     * @param chunkZ         the chunk z coordinate
+     * @param representation the representation
+     * @return the block z coordinate
+     */
+    public static int toZ(int chunkZ, int representation) {
+        return (chunkZ << 4) | ((representation >> 4) & 15);
+    }
+
+    /**
+     * Gets the representation of a packed block position within its chunk
+     *
+     * @param pos the packed position, see {@link BlockPos}
+     * @return the representation, unique for every block of a chunk
+     */
+    public static int toRepresentation(long pos) {
+        return toRepresentation(BlockPos.x(pos), BlockPos.y(pos), BlockPos.z(pos));
+    }
+
+    /**
+     * Gets the representation of a location within its chunk
+     *
+     * @param location the location
+     * @return the representation, unique for every block of a chunk
+     */
+    public static int toRepresentation(Location location) {
+        return toRepresentation(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * Gets the Key of the location. Allocates the key, use {@link #getValue(int)} on hot paths.
      *
      * @param location the location to get the key from
-     * @return the key from the location
+     * @return the key, or null if the location is not tracked
      */
     public Key getKey(Location location) {
-        final int prime = 31;
-        int rep = 1;
-        rep = prime * rep + location.hashCode();
-        return durabilities.get(rep);
+        return getKey(toRepresentation(location));
     }
 
     /**
-     * Gets the durability of a hash representation
+     * Gets the Key of a representation. Allocates the key, use {@link #getValue(int)} on hot paths.
      *
-     * @param representation the hash representation to check
-     * @return the durability of the hash representation
+     * @param representation the representation to get the key from
+     * @return the key, or null if the representation is not tracked
+     */
+    public Key getKey(int representation) {
+        final long value = durabilities.get(representation);
+        if (value == DurabilityMap.ABSENT) {
+            return null;
+        }
+        return new Key(world, toX(chunkX, representation), toY(representation), toZ(chunkZ, representation), DurabilityMap.durability(value), DurabilityMap.time(value));
+    }
+
+    /**
+     * Gets the packed durability and durability time of a representation, see {@link DurabilityMap}
+     *
+     * @param representation the representation to check
+     * @return the packed value, or {@link DurabilityMap#ABSENT} if the representation is not tracked
+     */
+    public long getValue(int representation) {
+        return durabilities.get(representation);
+    }
+
+    /**
+     * Gets the durability of a representation
+     *
+     * @param representation the representation to check
+     * @return the durability of the representation, or 0 if it is not tracked
      */
     public int getDurability(int representation) {
-        return durabilities.get(representation).durabilityAmount;
+        final long value = durabilities.get(representation);
+        return value == DurabilityMap.ABSENT ? 0 : DurabilityMap.durability(value);
     }
 
     /**
-     * Gets the durability time of a hash representation
+     * Gets the durability time of a representation
      *
-     * @param representation the hash representation to check
-     * @return the durability time of the hash representation
+     * @param representation the representation to check
+     * @return the durability time of the representation, or 0 if it is not tracked
      */
     public long getDurabilityTime(int representation) {
-        return durabilities.get(representation).durabilityTime;
+        final long value = durabilities.get(representation);
+        return value == DurabilityMap.ABSENT ? 0L : DurabilityMap.time(value);
     }
 
     /**
-     * Gets the durability time of the location
+     * Gets the durability of the location
      *
      * @param location the location to check
-     * @return the durability of the location
+     * @return the durability of the location, or 0 if it is not tracked
      */
     public int getDurability(Location location) {
-        return getKey(location).durabilityAmount;
+        return getDurability(toRepresentation(location));
     }
 
     /**
      * Gets the durability time of the location
      *
      * @param location the location to check
-     * @return the durability time of the location
+     * @return the durability time of the location, or 0 if it is not tracked
      */
     public long getDurabilityTime(Location location) {
-        return getKey(location).durabilityTime;
+        return getDurabilityTime(toRepresentation(location));
     }
 
     /**
@@ -106,8 +252,12 @@ public class ChunkWrapper {
      * @param block      the block to add
      */
     public void addBlock(int durability, Block block) {
-        Key key = new Key(block.getLocation(), durability);
-        durabilities.put(key.hashCode(), key);
+        final int x = block.getX(), y = block.getY(), z = block.getZ();
+        durabilities.put(toRepresentation(x, y, z), DurabilityMap.pack(durability, 0L));
+        modifications++;
+        if (journal != null) {
+            journal.logAdd(world, x, y, z, durability);
+        }
     }
 
     /**
@@ -118,8 +268,14 @@ public class ChunkWrapper {
      * @param block      the block to be added
      */
     public void addBlockTimer(int durability, long time, Block block) {
-        Key key = new Key(block.getLocation(), durability, time);
-        durabilities.put(key.hashCode(), key);
+        final int x = block.getX(), y = block.getY(), z = block.getZ();
+        final int representation = toRepresentation(x, y, z);
+        durabilities.put(representation, DurabilityMap.pack(durability, time));
+        expiries.schedule(LongHashSet.chunkKey(chunkX, chunkZ), representation, time);
+        modifications++;
+        if (journal != null) {
+            journal.logTimer(world, x, y, z, durability, time);
+        }
     }
 
     /**
@@ -128,7 +284,7 @@ public class ChunkWrapper {
      * @param block the block to remove
      */
     public void removeKey(Block block) {
-        removeKey(block.getLocation());
+        removeKey(toRepresentation(block.getX(), block.getY(), block.getZ()));
     }
 
     /**
@@ -137,24 +293,60 @@ public class ChunkWrapper {
      * @param location the location to remove
      */
     public void removeKey(Location location) {
-        Key key = new Key(location, 0, 0);
-        durabilities.remove(key.hashCode());
+        removeKey(toRepresentation(location));
     }
 
     /**
      * Removes a key from the chunk
      *
-     * @param representation the hash representation to remove
+     * @param representation the representation to remove
      */
     public void removeKey(int representation) {
-        durabilities.remove(representation);
+        if (durabilities.remove(representation) != DurabilityMap.ABSENT) {
+            modifications++;
+            if (journal != null) {
+                journal.logRemove(world, toX(chunkX, representation), toY(representation), toZ(chunkZ, representation));
+            }
+        }
     }
 
     /**
      * Clear the durabilities loaded in the chunk
      */
     public void removeKeys() {
-        durabilities.clear();
+        if (!durabilities.isEmpty()) {
+            durabilities.clear();
+            modifications++;
+            if (journal != null) {
+                journal.logClear(world, chunkX, chunkZ);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of blocks tracked in the chunk
+     *
+     * @return amount of tracked blocks
+     */
+    public int size() {
+        return durabilities.size();
+    }
+
+    /**
+     * Checks if the chunk changed since it was loaded or last saved
+     *
+     * @return true if the chunk needs to be written
+     */
+    public boolean isDirty() {
+        return modifications != savedModifications;
+    }
+
+    /**
+     * Marks the chunk as changed, so the next save writes it again. Must be called on the main
+     * thread.
+     */
+    void markDirty() {
+        savedModifications = modifications - 1;
     }
 
     /**
@@ -164,52 +356,30 @@ public class ChunkWrapper {
      * @return true if the location is found within the chunk
      */
     public boolean contains(Location location) {
-        final int prime = 31;
-        int rep = 1;
-        rep = prime * rep + location.hashCode();
-        return contains(rep);
+        return contains(toRepresentation(location));
     }
 
     /**
      * Does the chunk contains this location key
      *
-     * @param representation the hash representation to check the chunk for
-     * @return true if the hash representation is found within the chunk
+     * @param representation the representation to check the chunk for
+     * @return true if the representation is found within the chunk
      */
     public boolean contains(int representation) {
-        return durabilities.containsKey(representation);
+        return durabilities.contains(representation);
     }
 
     /**
-     * Saves the chunk information
+     * Saves the chunk information if it changed
      *
      * @param load  set to true to load data after saving
      * @param clear set to true to clear self after saving
+     * @return true if the chunk was written
      */
-    public void save(boolean load, boolean clear) {
-        File durabilityFile = new File(durabilitiesDir, chunkX + "." + chunkZ + "." + world + ".odr");
-        // Used for sane file creation
-        boolean noDuraFile = false;
-        if (this.durabilities.size() > 0) {
-            durabilities.remove(expiredDurabilities());
-        }
-        if (this.durabilities.size() <= 0) {
-            if (durabilityFile.exists()) {
-                durabilityFile.delete();
-            }
-            noDuraFile = true;
-        }
-        if (!noDuraFile) {
-            ODRFile region = new ODRFile();
-            try {
-                region.prepare(durabilityFile, true);
-                for (Key key : durabilities.values()) {
-                    region.write(key.x, key.y, key.z, key.durabilityAmount, key.durabilityTime);
-                }
-                region.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    public boolean save(boolean load, boolean clear) {
+        final boolean dirty = isDirty();
+        if (dirty && !write(snapshot())) {
+            markDirty();
         }
         if (clear) {
             this.durabilities.clear();
@@ -217,81 +387,200 @@ public class ChunkWrapper {
         if (load) {
             load();
         }
+        return dirty;
     }
 
     /**
-     * Gets a list of durability keys that are not worth saving
+     * Saves the chunk information on the I/O executor if it changed. The keys are copied right away,
+     * so the wrapper may be changed or dropped while the write is pending.
      *
-     * @return list of expired durability keys
+     * @param executor  the executor to write with
+     * @param clear     set to true to clear self after the copy is taken
+     * @param partition the partition to report a failed write to
+     * @return true if a write was queued, false if the chunk is unchanged
      */
-    private List<Integer> expiredDurabilities() {
-        List<Integer> expiredDurabilities = new ArrayList<Integer>();
-        for (Key key : durabilities.values()) {
-            if (MaterialManager.getInstance().getDurabilityResetTimerEnabled(key.toLocation().getBlock().getType().name())) {
-                long currentTime = System.currentTimeMillis();
-                if (currentTime > key.durabilityTime) {
-                    if (ConfigManager.getInstance().getMaterialsRegenerateOverTime()) {
-                        long regenTime = MaterialManager.getInstance().getDurabilityResetTime(key.toLocation().getBlock().getType().name());
-                        int amount = Math.max(1, Math.round((float) (currentTime - key.durabilityTime) / regenTime));
-                        int durability = key.durabilityAmount - amount;
-                        if (durability <= 0) {
-                            expiredDurabilities.add(key.hashCode());
-                        }
-                    } else {
-                        expiredDurabilities.add(key.hashCode());
-                    }
+    public boolean saveAsync(ExecutorService executor, boolean clear, final WorldPartition partition) {
+        if (!isDirty()) {
+            if (clear) {
+                this.durabilities.clear();
+            }
+            return false;
+        }
+        final DurabilityMap keys = snapshot();
+        if (clear) {
+            this.durabilities.clear();
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!write(keys)) {
+                    partition.writeFailed(ChunkWrapper.this);
                 }
             }
+        });
+        return true;
+    }
+
+    /**
+     * Copies the keys without marking the chunk as saved
+     *
+     * @return copy of the keys
+     */
+    DurabilityMap copyKeys() {
+        return durabilities.copy();
+    }
+
+    /**
+     * Copies the keys to save. Expired durabilities are retired by the timing wheel of the chunk
+     * manager, so all keys are kept. Must be called on the main thread.
+     *
+     * @return copy of the keys worth saving
+     */
+    DurabilityMap snapshot() {
+        savedModifications = modifications;
+        DurabilityMap keys = durabilities.copy();
+        storedRecords = keys.size();
+        storedMaxExpiry = keys.getMaxTime();
+        return keys;
+    }
+
+    /**
+     * Writes keys into the store, or removes the chunk from it if there are none. A failed write
+     * leaves the chunk as it is; the caller has to mark it dirty on the main thread.
+     *
+     * @param keys the keys to write
+     * @return true if the keys were written
+     */
+    boolean write(DurabilityMap keys) {
+        try {
+            if (keys.isEmpty()) {
+                store.delete(world, chunkX, chunkZ);
+            } else {
+                byte[] data = encode(keys);
+                store.put(world, chunkX, chunkZ, data, data.length);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
         }
-        return expiredDurabilities;
     }
 
     /**
-     * Loads a specific directory
+     * Encodes keys into chunk data, see {@link ODRFile}
+     *
+     * @param keys the keys to encode
+     * @return the chunk data, empty if there are no keys
+     * @throws IOException thrown if something happens
      */
-    public void load() {
-        File file = new File(durabilitiesDir, chunkX + "." + chunkZ + "." + world + ".odr");
-        if (!file.exists()) {
-            return;
+    byte[] encode(DurabilityMap keys) throws IOException {
+        if (keys.isEmpty()) {
+            return new byte[0];
         }
-        String[] fileParts = file.getName().split("\\.");
-        if (fileParts.length < 3) {
-            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed loading chunk durabilites! {0} {1}", new Object[]{chunkX, chunkZ});
-            return;
+        ODRFile file = new ODRFile();
+        file.prepare(chunkX, chunkZ);
+        file.reserve(keys.size());
+        for (int representation : keys.keys()) {
+            final long value = keys.get(representation);
+            file.write(toX(chunkX, representation), toY(representation), toZ(chunkZ, representation), DurabilityMap.durability(value), DurabilityMap.time(value));
+        }
+        return file.toByteArray();
+    }
+
+    /**
+     * Loads the chunk information from the store on the I/O executor
+     *
+     * @param executor the executor to read with
+     */
+    public void loadAsync(ExecutorService executor) {
+        loading = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Checks if a load of this wrapper is still in flight
+     *
+     * @return true if the wrapper is still being loaded
+     */
+    public boolean isLoading() {
+        Future<?> task = loading;
+        return task != null && !task.isDone();
+    }
+
+    /**
+     * Cancels a pending load of this wrapper
+     */
+    public void cancelLoad() {
+        Future<?> task = loading;
+        if (task != null) {
+            task.cancel(false);
         }
-        String w = fileParts[2]; // To see if world == file name world
-        World bWorld = Bukkit.getWorld(w);
-        if (bWorld == null) {
-            ObsidianDestroyer.LOG.log(Level.SEVERE, "World is null!");
+    }
+
+    /**
+     * Waits for a pending load of this wrapper to complete
+     */
+    public void awaitLoad() {
+        Future<?> task = loading;
+        if (task == null) {
             return;
         }
-        if (!w.equals(world)) {
-            ObsidianDestroyer.LOG.log(Level.SEVERE, "Wrong world..");
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // dropped before it was read
+        } catch (ExecutionException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed loading chunk durabilities! {0} {1}", new Object[]{chunkX, chunkZ});
+            e.getCause().printStackTrace();
+        }
+        loading = null;
+    }
+
+    /**
+     * Loads the chunk information from the store
+     */
+    public void load() {
+        try {
+            load(store.get(world, chunkX, chunkZ));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the chunk information from chunk data read from the store. Durability timers are
+     * scheduled in the timing wheel, expired ones are handled on its next advance, as block types
+     * can only be looked up on the main thread.
+     *
+     * @param data the chunk data, or null if the chunk has none
+     */
+    public void load(byte[] data) {
+        if (data == null) {
             return;
         }
-        ODRFile region = new ODRFile();
+        ODRFile file = new ODRFile();
         try {
-            region.prepare(file, false);
-            Key info = null;
-            while ((info = region.getNext(bWorld)) != null) {
-                long currentTime = System.currentTimeMillis();
-                if (currentTime > info.durabilityTime && MaterialManager.getInstance().getDurabilityResetTimerEnabled(info.toLocation().getBlock().getType().name())) {
-                    if (ConfigManager.getInstance().getMaterialsRegenerateOverTime()) {
-                        long regenTime = MaterialManager.getInstance().getDurabilityResetTime(info.toLocation().getBlock().getType().name());
-                        long result = currentTime - info.durabilityTime;
-                        int amount = Math.max(1, Math.round((float) result / regenTime));
-                        int durability = info.durabilityAmount - amount;
-                        if (durability <= 0) {
-                            continue;
-                        }
-                        info = new Key(info.toLocation(), durability, currentTime + regenTime);
-                    } else {
-                        continue;
+            file.prepare(data);
+            final long[] maxExpiry = new long[1];
+            storedRecords = file.read(new ODRFile.RecordVisitor() {
+                @Override
+                public void visit(int x, int y, int z, int duraAmount, long duraTime) {
+                    final int representation = toRepresentation(x, y, z);
+                    durabilities.put(representation, DurabilityMap.pack(duraAmount, duraTime));
+                    if (duraTime > 0L) {
+                        expiries.schedule(LongHashSet.chunkKey(chunkX, chunkZ), representation, duraTime);
                     }
+                    maxExpiry[0] = Math.max(maxExpiry[0], duraTime);
                 }
-                durabilities.put(info.hashCode(), info);
-            }
-            region.close();
+            });
+            storedMaxExpiry = maxExpiry[0];
+            file.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -2,36 +2,38 @@ package com.drtshock.obsidiandestroyer.managers;
 
 import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
 import com.drtshock.obsidiandestroyer.datatypes.DurabilityMaterial;
+import com.drtshock.obsidiandestroyer.datatypes.ExplosionSource;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
 import com.drtshock.obsidiandestroyer.util.Util;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.EntityType;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 public class ConfigManager {
 
     private static ConfigManager instance;
-    private static YamlConfiguration tc;
-    private static YamlConfiguration tm;
-    private YamlConfiguration config;
-    private YamlConfiguration materials;
-    private boolean loaded;
+    // the published config, replaced as a whole on reload
+    private volatile ConfigSnapshot snapshot;
 
     /**
-     * Initializes a new config manager
-     *
-     * @param loaded is the manager loaded
+     * Initializes a new config manager. Falls back to the default values if the files fail to
+     * load.
      */
-    public ConfigManager(boolean loaded) {
+    public ConfigManager() {
         instance = this;
-        this.loaded = false;
-        if (!loaded) {
-            loadFiles(false);
+        snapshot = loadFiles(false);
+        if (snapshot == null) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "The config has encountered an error on load. Using the default values...");
+            snapshot = new ConfigSnapshot(new YamlConfiguration(), new YamlConfiguration());
         }
     }
 
@@ -44,32 +46,37 @@ public class ConfigManager {
         return instance;
     }
 
-    public void reload() {
-        this.loaded = false;
-        loadFiles(false);
+    /**
+     * Reloads the config and material file, and publishes them if they loaded. The current config
+     * stays in use if they failed to load.
+     *
+     * @return true if the files were loaded
+     */
+    public boolean reload() {
+        ConfigSnapshot loaded = loadFiles(false);
+        if (loaded == null) {
+            return false;
+        }
+        snapshot = loaded;
+        return true;
     }
 
     /**
-     * Create a copy of the files in memory
+     * Gets the published config. Read it once for work that should see one consistent config.
      *
-     * @param apply the copy in memory to the current instance
+     * @return the config snapshot
      */
-    public void backup(boolean apply) {
-        if (!apply) {
-            tc = config;
-            tm = materials;
-        } else {
-            config = tc;
-            materials = tm;
-        }
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
      * Loads config and material file
      *
      * @param update for recursive check
+     * @return the compiled files, or null if they failed to load
      */
-    private void loadFiles(boolean update) {
+    private ConfigSnapshot loadFiles(boolean update) {
         File folder = ObsidianDestroyer.getInstance().getDataFolder();
         if (!folder.isDirectory()) {
             folder.mkdirs();
@@ -81,28 +88,25 @@ public class ConfigManager {
         } else {
             ObsidianDestroyer.debug("Loading config File...");
         }
-        config = YamlConfiguration.loadConfiguration(configFile);
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(configFile);
 
         String version = ObsidianDestroyer.getInstance().getDescription().getVersion();
         if (config != null && !config.getString("Version", version).equals(version)) {
             if (update) {
                 ObsidianDestroyer.LOG.log(Level.SEVERE, "Loading failed on update check.  Aborting...");
-                return;
+                return null;
             }
             ObsidianDestroyer.LOG.log(Level.WARNING, "Config File outdated, backing up old...");
             File configFileOld = new File(ObsidianDestroyer.getInstance().getDataFolder(), "config.yml.old");
             try {
                 config.save(configFileOld);
             } catch (IOException e) {
-                loaded = false;
                 e.printStackTrace();
             }
             configFile.delete();
-            loadFiles(true);
-            return;
-        } else if (config != null && "null".equals(config.getString("Version", "null"))) {
-            loaded = false;
-            return;
+            return loadFiles(true);
+        } else if (config == null || "null".equals(config.getString("Version", "null"))) {
+            return null;
         }
 
         File structuresFile = new File(ObsidianDestroyer.getInstance().getDataFolder(), "materials.yml");
@@ -112,8 +116,12 @@ public class ConfigManager {
         } else {
             ObsidianDestroyer.debug("Loading materials File...");
         }
-        materials = YamlConfiguration.loadConfiguration(structuresFile);
-        loaded = true;
+        YamlConfiguration materials = YamlConfiguration.loadConfiguration(structuresFile);
+        if (materials.getConfigurationSection("HandledMaterials") == null) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "No handled materials in ''{0}''", structuresFile.getName());
+            return null;
+        }
+        return new ConfigSnapshot(config, materials);
     }
 
     /**
@@ -164,17 +172,13 @@ public class ConfigManager {
         }
     }
 
-    public boolean isLoaded() {
-        return loaded;
-    }
-
     /**
      * Gets verbose mode enabled
      *
      * @return verbose mode enabled
      */
     public boolean getVerbose() {
-        return config.getBoolean("Verbose", false);
+        return snapshot.getVerbose();
     }
 
     /**
@@ -183,16 +187,49 @@ public class ConfigManager {
      * @return debug mode enabled
      */
     public boolean getDebug() {
-        return config == null || config.getBoolean("Debug", false);
+        return snapshot == null || snapshot.getDebug();
     }
 
     /**
-     * Gets the list of disabled worlds from the config
+     * Gets the set of disabled worlds from the config
      *
-     * @return list of world names
+     * @return set of world names
      */
-    public List<String> getDisabledWorlds() {
-        return config.getStringList("DisabledOnWorlds");
+    public Set<String> getDisabledWorlds() {
+        return snapshot.getDisabledWorlds();
+    }
+
+    /**
+     * Gets the explosion sources materials take damage from, or the default sources if the config
+     * has none
+     *
+     * @return list of explosion sources
+     */
+    public List<ExplosionSource> getExplosionSources() {
+        ConfigurationSection section = snapshot.getConfig().getConfigurationSection("ExplosionSources");
+        if (section == null) {
+            return ExplosionSource.defaults();
+        }
+        List<ExplosionSource> sources = new ArrayList<ExplosionSource>();
+        for (String name : section.getKeys(false)) {
+            ConfigurationSection sourceSection = section.getConfigurationSection(name);
+            if (sourceSection == null) {
+                ObsidianDestroyer.LOG.log(Level.SEVERE, "Invalid explosion source: Unable to load ''{0}''", name);
+                continue;
+            }
+            List<EntityType> entityTypes = new ArrayList<EntityType>();
+            for (String entityType : sourceSection.getStringList("Entities")) {
+                try {
+                    entityTypes.add(EntityType.valueOf(entityType.toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    ObsidianDestroyer.LOG.log(Level.WARNING, "Invalid Entity Type: Did not load ''{0}'' for explosion source ''{1}''", new Object[]{entityType, name});
+                }
+            }
+            sources.add(new ExplosionSource(name, entityTypes, sourceSection.getBoolean("Charged", false),
+                    sourceSection.getString("EnabledFor", name), sourceSection.getString("Damage", name),
+                    sourceSection.getBoolean("EnabledDefault", false), sourceSection.getInt("DamageDefault", 1)));
+        }
+        return sources;
     }
 
     /**
@@ -201,8 +238,21 @@ public class ConfigManager {
      * @return map of materials keys and material durability data
      */
     public Map<String, DurabilityMaterial> getDurabilityMaterials() {
-        ConfigurationSection section = materials.getConfigurationSection("HandledMaterials");
+        return getDurabilityMaterials(getExplosionSources());
+    }
+
+    /**
+     * Translates the materials.yml from memory into a map for quick access
+     *
+     * @param sources the explosion sources to read the damage of
+     * @return map of materials keys and material durability data
+     */
+    public Map<String, DurabilityMaterial> getDurabilityMaterials(List<ExplosionSource> sources) {
+        ConfigurationSection section = snapshot.getMaterials().getConfigurationSection("HandledMaterials");
         Map<String, DurabilityMaterial> durabilityMaterials = new HashMap<String, DurabilityMaterial>();
+        if (section == null) {
+            return durabilityMaterials;
+        }
         for (String durabilityMaterial : section.getKeys(false)) {
             try {
                 ConfigurationSection materialSection = section.getConfigurationSection(durabilityMaterial);
@@ -215,7 +265,7 @@ public class ConfigManager {
                     ObsidianDestroyer.LOG.log(Level.WARNING, "Non-Solid Material Type: Did not load ''{0}''", durabilityMaterial);
                     continue;
                 }
-                DurabilityMaterial durablock = new DurabilityMaterial(material, materialSection);
+                DurabilityMaterial durablock = new DurabilityMaterial(material, materialSection, sources);
                 if (durablock.getEnabled()) {
                     if (getVerbose() || getDebug()) {
                         ObsidianDestroyer.LOG.log(Level.INFO, "Loaded durability of ''{0}'' for ''{1}''", new Object[]{durablock.getDurability(), durabilityMaterial});
@@ -232,70 +282,63 @@ public class ConfigManager {
     }
 
     public int getRadius() {
-        return config.getInt("Radius", 3);
+        return snapshot.getRadius();
     }
 
     public boolean getMaterialsRegenerateOverTime() {
-        return config.getBoolean("DurabilityRegeneratesOverTime", false);
+        return snapshot.getMaterialsRegenerateOverTime();
     }
 
     public boolean getFluidsProtectIndustructables() {
-        return config.getBoolean("FluidsProtectIndustructables", true);
+        return snapshot.getFluidsProtectIndustructables();
     }
 
     public boolean getBypassAllFluidProtection() {
-        return config.getBoolean("Explosions.BypassAllFluidProtection", false);
+        return snapshot.getBypassAllFluidProtection();
     }
 
     public boolean getProtectTNTCannons() {
-        return config.getBoolean("Explosions.TNTCannonsProtected", true);
+        return snapshot.getProtectTNTCannons();
     }
 
     public boolean getCheckUpdate() {
-        return config.getBoolean("checkupdate", true);
+        return snapshot.getCheckUpdate();
     }
 
     public boolean getDownloadUpdate() {
-        return config.getBoolean("downloadupdate", false);
+        return snapshot.getDownloadUpdate();
     }
 
     public boolean getEffectsEnabled() {
-        return config.getBoolean("Effects.Enabled", true);
+        return snapshot.getEffectsEnabled();
     }
 
     public double getEffectsChance() {
-        double value = config.getDouble("Effects.Chance", 0.12);
-        if (value > 0.6) {
-            value = 0.6;
-        }
-        if (value <= 0) {
-            value = 0.01;
-        }
-        return value;
+        return snapshot.getEffectsChance();
     }
 
     public boolean getProtectBedrockBorders() {
-        return config.getBoolean("ProtectBedrockBorders", true);
+        return snapshot.getProtectBedrockBorders();
     }
 
     public boolean getIgnoreUnhandledExplosionTypes() {
-        return config.getBoolean("Explosions.IgnoreUnhandledTypes", false);
+        return snapshot.getIgnoreUnhandledExplosionTypes();
     }
 
     public Material getDurabilityCheckItem() {
-        return Material.matchMaterial(config.getString("DurabilityCheckItem", "POTATO_ITEM"));
+        return snapshot.getDurabilityCheckItem();
     }
 
     public boolean getHandleFactions() {
-        return config.getBoolean("Factions.HandleExplosions", true);
+        return snapshot.getHandleFactions();
     }
 
     public boolean getHandleOfflineFactions() {
-        return config.getBoolean("Factions.HandleOffline", false);
+        return snapshot.getHandleOfflineFactions();
     }
 
     public boolean getProtectOfflineFactions() {
-        return config.getBoolean("Factions.ProtectOffline", false);
+        return snapshot.getProtectOfflineFactions();
     }
 
     public boolean getUsingFactions() {
@@ -303,30 +346,58 @@ public class ConfigManager {
     }
 
     public boolean getHandleOnlineFactions() {
-        return config.getBoolean("Factions.HandleOnline", false);
+        return snapshot.getHandleOnlineFactions();
     }
 
     public double getOfflineFactionsDurabilityMultiplier() {
-        return config.getDouble("Factions.OfflineDurabilityMultiplier", 1.0);
+        return snapshot.getOfflineFactionsDurabilityMultiplier();
     }
 
     public double getOnlineFactionsDurabilityMultiplier() {
-        return config.getDouble("Factions.OnlineDurabilityMultiplier", 1.0);
+        return snapshot.getOnlineFactionsDurabilityMultiplier();
     }
 
     public int getBorderToProtectNormal() {
-        return config.getInt("BorderToProtect.World", 5);
+        return snapshot.getBorderToProtectNormal();
     }
 
     public int getBorderToProtectNether() {
-        return config.getInt("BorderToProtect.Nether", 123);
+        return snapshot.getBorderToProtectNether();
     }
 
     public boolean getDisableDamageBleeding() {
-        return config.getBoolean("Explosions.DisableDamageBleeding", true);
+        return snapshot.getDisableDamageBleeding();
     }
 
     public double getNextLayerDamageChance() {
-        return config.getDouble("Explosions.NextLevelDamageChance", 0.5);
+        return snapshot.getNextLayerDamageChance();
+    }
+
+    public boolean getJournalEnabled() {
+        return snapshot.getJournalEnabled();
+    }
+
+    public long getJournalCommitInterval() {
+        return snapshot.getJournalCommitInterval();
+    }
+
+    public boolean getAutosaveEnabled() {
+        return snapshot.getAutosaveEnabled();
+    }
+
+    public long getAutosaveInterval() {
+        return snapshot.getAutosaveInterval();
+    }
+
+    public long getAutosaveTimeBudget() {
+        return snapshot.getAutosaveTimeBudget();
+    }
+
+    public long getShutdownDeadline() {
+        return snapshot.getShutdownDeadline();
+    }
+
+    public StoreType getStoreType() {
+        return snapshot.getStoreType();
     }
 }
@@ -0,0 +1,259 @@
+package com.drtshock.obsidiandestroyer.managers;
+
+import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * The values of config.yml, read once when the files are loaded. A snapshot never changes; a
+ * reload compiles a new one and {@link ConfigManager} publishes it in one swap, so an explosion
+ * sees either the old or the new config and never a mix of both.
+ */
+public final class ConfigSnapshot {
+
+    // the files the snapshot was read from, for the durability materials and explosion sources
+    private final YamlConfiguration config;
+    private final YamlConfiguration materials;
+
+    private final boolean verbose;
+    private final boolean debug;
+    private final Set<String> disabledWorlds;
+    private final int radius;
+    private final boolean materialsRegenerateOverTime;
+    private final boolean fluidsProtectIndustructables;
+    private final boolean bypassAllFluidProtection;
+    private final boolean protectTNTCannons;
+    private final boolean checkUpdate;
+    private final boolean downloadUpdate;
+    private final boolean effectsEnabled;
+    private final double effectsChance;
+    private final boolean protectBedrockBorders;
+    private final boolean ignoreUnhandledExplosionTypes;
+    private final Material durabilityCheckItem;
+    private final boolean handleFactions;
+    private final boolean handleOfflineFactions;
+    private final boolean protectOfflineFactions;
+    private final boolean handleOnlineFactions;
+    private final double offlineFactionsDurabilityMultiplier;
+    private final double onlineFactionsDurabilityMultiplier;
+    private final int borderToProtectNormal;
+    private final int borderToProtectNether;
+    private final boolean disableDamageBleeding;
+    private final double nextLayerDamageChance;
+    private final boolean journalEnabled;
+    private final long journalCommitInterval;
+    private final boolean autosaveEnabled;
+    private final long autosaveInterval;
+    private final long autosaveTimeBudget;
+    private final long shutdownDeadline;
+    private final StoreType storeType;
+
+    /**
+     * Compiles a snapshot of the config
+     *
+     * @param config    the loaded config.yml
+     * @param materials the loaded materials.yml
+     */
+    ConfigSnapshot(YamlConfiguration config, YamlConfiguration materials) {
+        this.config = config;
+        this.materials = materials;
+        this.verbose = config.getBoolean("Verbose", false);
+        this.debug = config.getBoolean("Debug", false);
+        this.disabledWorlds = Collections.unmodifiableSet(new HashSet<String>(config.getStringList("DisabledOnWorlds")));
+        this.radius = config.getInt("Radius", 3);
+        this.materialsRegenerateOverTime = config.getBoolean("DurabilityRegeneratesOverTime", false);
+        this.fluidsProtectIndustructables = config.getBoolean("FluidsProtectIndustructables", true);
+        this.bypassAllFluidProtection = config.getBoolean("Explosions.BypassAllFluidProtection", false);
+        this.protectTNTCannons = config.getBoolean("Explosions.TNTCannonsProtected", true);
+        this.checkUpdate = config.getBoolean("checkupdate", true);
+        this.downloadUpdate = config.getBoolean("downloadupdate", false);
+        this.effectsEnabled = config.getBoolean("Effects.Enabled", true);
+        this.effectsChance = readEffectsChance(config.getDouble("Effects.Chance", 0.12));
+        this.protectBedrockBorders = config.getBoolean("ProtectBedrockBorders", true);
+        this.ignoreUnhandledExplosionTypes = config.getBoolean("Explosions.IgnoreUnhandledTypes", false);
+        this.durabilityCheckItem = Material.matchMaterial(config.getString("DurabilityCheckItem", "POTATO_ITEM"));
+        this.handleFactions = config.getBoolean("Factions.HandleExplosions", true);
+        this.handleOfflineFactions = config.getBoolean("Factions.HandleOffline", false);
+        this.protectOfflineFactions = config.getBoolean("Factions.ProtectOffline", false);
+        this.handleOnlineFactions = config.getBoolean("Factions.HandleOnline", false);
+        this.offlineFactionsDurabilityMultiplier = config.getDouble("Factions.OfflineDurabilityMultiplier", 1.0);
+        this.onlineFactionsDurabilityMultiplier = config.getDouble("Factions.OnlineDurabilityMultiplier", 1.0);
+        this.borderToProtectNormal = config.getInt("BorderToProtect.World", 5);
+        this.borderToProtectNether = config.getInt("BorderToProtect.Nether", 123);
+        this.disableDamageBleeding = config.getBoolean("Explosions.DisableDamageBleeding", true);
+        this.nextLayerDamageChance = config.getDouble("Explosions.NextLevelDamageChance", 0.5);
+        this.journalEnabled = config.getBoolean("Persistence.Journal.Enabled", true);
+        this.journalCommitInterval = Math.max(1L, config.getLong("Persistence.Journal.CommitInterval", 100L));
+        this.autosaveEnabled = config.getBoolean("Persistence.Autosave.Enabled", true);
+        this.autosaveInterval = Math.max(1L, config.getLong("Persistence.Autosave.Interval", 300L));
+        this.autosaveTimeBudget = Math.max(1L, config.getLong("Persistence.Autosave.TimeBudget", 2L));
+        this.shutdownDeadline = Math.max(1L, config.getLong("Persistence.Shutdown.Deadline", 20L));
+        this.storeType = readStoreType(config.getString("Persistence.Store", "REGION"));
+    }
+
+    private static double readEffectsChance(double value) {
+        if (value > 0.6) {
+            value = 0.6;
+        }
+        if (value <= 0) {
+            value = 0.01;
+        }
+        return value;
+    }
+
+    private static StoreType readStoreType(String type) {
+        try {
+            return StoreType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            ObsidianDestroyer.LOG.log(Level.WARNING, "Unknown durability store {0}, using REGION", type);
+            return StoreType.REGION;
+        }
+    }
+
+    YamlConfiguration getConfig() {
+        return config;
+    }
+
+    YamlConfiguration getMaterials() {
+        return materials;
+    }
+
+    public boolean getVerbose() {
+        return verbose;
+    }
+
+    public boolean getDebug() {
+        return debug;
+    }
+
+    /**
+     * Gets the names of the worlds the plugin will not interact with
+     *
+     * @return set of world names
+     */
+    public Set<String> getDisabledWorlds() {
+        return disabledWorlds;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public boolean getMaterialsRegenerateOverTime() {
+        return materialsRegenerateOverTime;
+    }
+
+    public boolean getFluidsProtectIndustructables() {
+        return fluidsProtectIndustructables;
+    }
+
+    public boolean getBypassAllFluidProtection() {
+        return bypassAllFluidProtection;
+    }
+
+    public boolean getProtectTNTCannons() {
+        return protectTNTCannons;
+    }
+
+    public boolean getCheckUpdate() {
+        return checkUpdate;
+    }
+
+    public boolean getDownloadUpdate() {
+        return downloadUpdate;
+    }
+
+    public boolean getEffectsEnabled() {
+        return effectsEnabled;
+    }
+
+    public double getEffectsChance() {
+        return effectsChance;
+    }
+
+    public boolean getProtectBedrockBorders() {
+        return protectBedrockBorders;
+    }
+
+    public boolean getIgnoreUnhandledExplosionTypes() {
+        return ignoreUnhandledExplosionTypes;
+    }
+
+    public Material getDurabilityCheckItem() {
+        return durabilityCheckItem;
+    }
+
+    public boolean getHandleFactions() {
+        return handleFactions;
+    }
+
+    public boolean getHandleOfflineFactions() {
+        return handleOfflineFactions;
+    }
+
+    public boolean getProtectOfflineFactions() {
+        return protectOfflineFactions;
+    }
+
+    public boolean getHandleOnlineFactions() {
+        return handleOnlineFactions;
+    }
+
+    public double getOfflineFactionsDurabilityMultiplier() {
+        return offlineFactionsDurabilityMultiplier;
+    }
+
+    public double getOnlineFactionsDurabilityMultiplier() {
+        return onlineFactionsDurabilityMultiplier;
+    }
+
+    public int getBorderToProtectNormal() {
+        return borderToProtectNormal;
+    }
+
+    public int getBorderToProtectNether() {
+        return borderToProtectNether;
+    }
+
+    public boolean getDisableDamageBleeding() {
+        return disableDamageBleeding;
+    }
+
+    public double getNextLayerDamageChance() {
+        return nextLayerDamageChance;
+    }
+
+    public boolean getJournalEnabled() {
+        return journalEnabled;
+    }
+
+    public long getJournalCommitInterval() {
+        return journalCommitInterval;
+    }
+
+    public boolean getAutosaveEnabled() {
+        return autosaveEnabled;
+    }
+
+    public long getAutosaveInterval() {
+        return autosaveInterval;
+    }
+
+    public long getAutosaveTimeBudget() {
+        return autosaveTimeBudget;
+    }
+
+    public long getShutdownDeadline() {
+        return shutdownDeadline;
+    }
+
+    public StoreType getStoreType() {
+        return storeType;
+    }
+}
@@ -0,0 +1,212 @@
+package com.drtshock.obsidiandestroyer.managers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reset of the durabilities of every world, of one world or of the blocks within a radius around a
+ * block of one world. The loaded chunks are cleared at once on the main thread; the stored chunks
+ * are removed or rewritten on the I/O executor of their world in batches of one region, see
+ * {@link WorldPartition#reset(DurabilityReset)}. The progress can be polled from any thread.
+ */
+public class DurabilityReset {
+
+    private final String world;
+    private final int centerX, centerZ;
+    private final int radius;
+    // one for the batches still being queued, see start()
+    private final AtomicInteger pendingBatches = new AtomicInteger(1);
+    private final AtomicInteger processedChunks = new AtomicInteger();
+    private final AtomicLong removedBlocks = new AtomicLong();
+    private volatile int chunkCount = 0;
+    private volatile boolean done = false;
+    private volatile boolean failed = false;
+
+    /**
+     * Creates a reset of every durability of a world
+     *
+     * @param world the world name, or null to reset every world
+     */
+    public DurabilityReset(String world) {
+        this(world, 0, 0, -1);
+    }
+
+    /**
+     * Creates a reset of the durabilities within a radius around a block
+     *
+     * @param world   the world name
+     * @param centerX the block x coordinate of the center
+     * @param centerZ the block z coordinate of the center
+     * @param radius  the radius in blocks, negative to reset the whole world
+     */
+    public DurabilityReset(String world, int centerX, int centerZ, int radius) {
+        this.world = world;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+    }
+
+    /**
+     * Gets the world to reset
+     *
+     * @return the world name, or null if every world is reset
+     */
+    public String getWorld() {
+        return world;
+    }
+
+    /**
+     * Checks if the reset is limited to a radius
+     *
+     * @return true if only the blocks within the radius are reset
+     */
+    public boolean isArea() {
+        return radius >= 0;
+    }
+
+    /**
+     * Checks if a block column is reset
+     *
+     * @param x the block x coordinate
+     * @param z the block z coordinate
+     * @return true if the blocks of the column are reset
+     */
+    public boolean contains(int x, int z) {
+        return radius < 0 || distanceSquared(x, z) <= (long) radius * radius;
+    }
+
+    /**
+     * Checks if any block of a chunk is reset
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the chunk has blocks to reset
+     */
+    public boolean intersects(int chunkX, int chunkZ) {
+        // the column of the chunk closest to the center
+        return contains(Math.max(chunkX << 4, Math.min(centerX, (chunkX << 4) + 15)), Math.max(chunkZ << 4, Math.min(centerZ, (chunkZ << 4) + 15)));
+    }
+
+    /**
+     * Checks if every block of a chunk is reset
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the whole chunk is reset
+     */
+    public boolean covers(int chunkX, int chunkZ) {
+        // the column of the chunk furthest from the center
+        final int x = Math.abs(centerX - (chunkX << 4)) > Math.abs(centerX - ((chunkX << 4) + 15)) ? chunkX << 4 : (chunkX << 4) + 15;
+        final int z = Math.abs(centerZ - (chunkZ << 4)) > Math.abs(centerZ - ((chunkZ << 4) + 15)) ? chunkZ << 4 : (chunkZ << 4) + 15;
+        return contains(x, z);
+    }
+
+    private long distanceSquared(int x, int z) {
+        final long dx = x - centerX;
+        final long dz = z - centerZ;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * Describes what is reset
+     *
+     * @return the description
+     */
+    public String describe() {
+        if (world == null) {
+            return "all worlds";
+        }
+        if (radius < 0) {
+            return "world " + world;
+        }
+        return "a radius of " + radius + " around " + centerX + ", " + centerZ + " in world " + world;
+    }
+
+    /**
+     * Counts blocks that were reset
+     *
+     * @param blocks the amount of blocks
+     */
+    void removed(long blocks) {
+        removedBlocks.addAndGet(blocks);
+    }
+
+    /**
+     * Counts a batch of stored chunks queued on an I/O executor. Must be called on the main thread.
+     *
+     * @param chunks the amount of chunks in the batch
+     */
+    void addBatch(int chunks) {
+        pendingBatches.incrementAndGet();
+        chunkCount += chunks;
+    }
+
+    /**
+     * Completes a batch of stored chunks
+     *
+     * @param chunks the amount of chunks in the batch
+     * @param error  true if the batch failed
+     */
+    void batchDone(int chunks, boolean error) {
+        if (error) {
+            failed = true;
+        }
+        processedChunks.addAndGet(chunks);
+        if (pendingBatches.decrementAndGet() == 0) {
+            done = true;
+        }
+    }
+
+    /**
+     * Marks every batch as queued. Must be called on the main thread.
+     */
+    void start() {
+        batchDone(0, false);
+    }
+
+    /**
+     * Checks if every batch is done
+     *
+     * @return true if the reset is done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Checks if a batch failed
+     *
+     * @return true if stored chunks could not be reset
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the amount of stored chunks to reset, as far as they are not loaded
+     *
+     * @return amount of stored chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Gets the progress of the reset
+     *
+     * @return percentage of the stored chunks reset
+     */
+    public int getPercent() {
+        final int total = chunkCount;
+        return total == 0 ? 100 : (int) ((processedChunks.get() * 100L) / total);
+    }
+
+    /**
+     * Gets the amount of blocks reset so far, as of the last save of the stored chunks
+     *
+     * @return amount of reset blocks
+     */
+    public long getRemovedBlocks() {
+        return removedBlocks.get();
+    }
+}
@@ -0,0 +1,306 @@
+package com.drtshock.obsidiandestroyer.managers;
+
+import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
+import com.drtshock.obsidiandestroyer.datatypes.DurabilityMap;
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRArchive;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRRegion;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+/**
+ * Point in time copy of the durabilities of every chunk, written into one archive, see
+ * {@link ODRArchive}. The loaded chunks are copied on the main thread when the snapshot is taken;
+ * the stored chunks are read from the store of their world in batches of one region on the I/O
+ * executor of the world, so chunk loads and saves keep going in between. A stored chunk that is
+ * about to be overwritten before its batch was read is read right before the write, see
+ * {@link #preserve(String, int, int)}. Only the loaded worlds are included; nothing writes to the
+ * directories of the other worlds, so they can be copied as they are.
+ *
+ * A snapshot is restored by copying the archive into the durability directory as an emergency
+ * file while the server is stopped.
+ */
+public class DurabilitySnapshot {
+
+    private final File file;
+    private final Map<String, WorldPartition> partitions = new HashMap<String, WorldPartition>();
+    private final ODRArchive archive;
+    // stored chunks that are not in the archive yet, per world; guarded by this
+    private final Map<String, LongHashSet> pending = new HashMap<String, LongHashSet>();
+    private final List<ChunkWrapper> loaded = new ArrayList<ChunkWrapper>();
+    private final List<DurabilityMap> loadedKeys = new ArrayList<DurabilityMap>();
+    private boolean reading = true;
+    private volatile boolean done = false;
+    private volatile boolean failed = false;
+    private volatile boolean readFailed = false;
+
+    /**
+     * Takes a snapshot. Must be called on the main thread.
+     *
+     * @param file       the archive file to write
+     * @param partitions the partitions of the loaded worlds
+     * @throws IOException thrown if the archive can not be created
+     */
+    DurabilitySnapshot(File file, Collection<WorldPartition> partitions) throws IOException {
+        this.file = file;
+        this.archive = new ODRArchive(file);
+        for (WorldPartition partition : partitions) {
+            this.partitions.put(partition.getWorldName(), partition);
+            // as of the writes queued so far
+            LongHashSet chunks = new LongHashSet();
+            for (long chunk : partition.getStoredChunks()) {
+                chunks.add(chunk);
+            }
+            for (ChunkWrapper wrapper : partition.getWrappers()) {
+                if (wrapper.isLoading()) {
+                    // nothing changed since it was stored, any write is preserved
+                    continue;
+                }
+                chunks.remove(LongHashSet.chunkKey(wrapper.getChunkX(), wrapper.getChunkZ()));
+                if (wrapper.size() > 0) {
+                    loaded.add(wrapper);
+                    loadedKeys.add(wrapper.copyKeys());
+                }
+            }
+            pending.put(partition.getWorldName(), chunks);
+        }
+    }
+
+    /**
+     * Gets the archive file
+     *
+     * @return the archive file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks if the snapshot is written, or failed
+     *
+     * @return true if the snapshot is done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Checks if the snapshot failed
+     *
+     * @return true if the archive could not be written
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the amount of chunks in the archive
+     *
+     * @return amount of chunks
+     */
+    public int getChunkCount() {
+        return archive.getChunkCount();
+    }
+
+    /**
+     * Queues a read of a stored chunk that is not in the archive yet, before a write that replaces
+     * it is queued. Must be called on the main thread.
+     *
+     * @param world  the world name
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    void preserve(String world, int chunkX, int chunkZ) {
+        final long[] chunk = new long[]{LongHashSet.chunkKey(chunkX, chunkZ)};
+        synchronized (this) {
+            LongHashSet chunks = pending.get(world);
+            if (!reading || chunks == null || !chunks.remove(chunk[0])) {
+                return;
+            }
+        }
+        queueRead(world, chunk);
+    }
+
+    /**
+     * Queues a read of every stored chunk that is not in the archive yet, before the store is
+     * cleared. Must be called on the main thread.
+     */
+    void preserveAll() {
+        Map<String, LongHashSet> chunks;
+        synchronized (this) {
+            if (!reading) {
+                return;
+            }
+            chunks = new HashMap<String, LongHashSet>(pending);
+            pending.clear();
+        }
+        for (Map.Entry<String, LongHashSet> entry : chunks.entrySet()) {
+            queueRead(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    /**
+     * Queues a read of every stored chunk of a world that is not in the archive yet, before the
+     * world is unloaded or reset. Must be called on the main thread.
+     *
+     * @param world the world name
+     */
+    void preserveWorld(String world) {
+        LongHashSet chunks;
+        synchronized (this) {
+            if (!reading) {
+                return;
+            }
+            chunks = pending.remove(world);
+        }
+        if (chunks != null) {
+            queueRead(world, chunks.toArray());
+        }
+    }
+
+    private void queueRead(final String world, final long[] chunks) {
+        partitions.get(world).getIOExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    read(world, chunks);
+                } catch (IOException e) {
+                    readFailed = true;
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private void read(String world, long[] chunks) throws IOException {
+        LongObjectMap<byte[]> data = partitions.get(world).getStore().getAll(world, chunks);
+        for (long chunk : data.keys()) {
+            archive.add(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk), data.get(chunk));
+        }
+    }
+
+    /**
+     * Writes the archive. Runs off the main thread.
+     */
+    void write() {
+        try {
+            for (int i = 0; i < loaded.size(); i++) {
+                ChunkWrapper wrapper = loaded.get(i);
+                archive.add(wrapper.getWorldName(), wrapper.getChunkX(), wrapper.getChunkZ(), wrapper.encode(loadedKeys.get(i)));
+            }
+            loaded.clear();
+            loadedKeys.clear();
+            for (final String world : worlds()) {
+                for (final long[] region : regions(world)) {
+                    // one region at a time, so other I/O is never held up for long
+                    submit(world, new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            long[] chunks = take(world, region);
+                            if (chunks.length > 0) {
+                                read(world, chunks);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+            synchronized (this) {
+                reading = false;
+            }
+            // preserved reads queued before these are done once they run
+            for (String world : partitions.keySet()) {
+                submit(world, new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        return null;
+                    }
+                });
+            }
+            if (readFailed) {
+                throw new IOException("Failed reading chunks");
+            }
+            archive.close();
+            done = true;
+            ObsidianDestroyer.LOG.log(Level.INFO, "Wrote durability snapshot {0} with {1} chunks.", new Object[]{file.getName(), archive.getChunkCount()});
+        } catch (Exception e) {
+            fail(e instanceof ExecutionException ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * Stops the snapshot and removes what was written so far
+     */
+    void abort() {
+        if (!done) {
+            fail(null);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            reading = false;
+        }
+        archive.abort();
+        done = true;
+        ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed writing durability snapshot {0}!", file.getName());
+        if (cause != null) {
+            cause.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs a task on the I/O executor of a world and waits for it
+     */
+    private void submit(String world, Callable<Void> task) throws InterruptedException, ExecutionException {
+        try {
+            partitions.get(world).getIOExecutor().submit(task).get();
+        } catch (RejectedExecutionException e) {
+            // the world was unloaded, its chunks were preserved before the executor was shut down
+        }
+    }
+
+    private synchronized List<String> worlds() {
+        return new ArrayList<String>(pending.keySet());
+    }
+
+    /**
+     * Groups the pending chunks of a world by region
+     */
+    private synchronized List<long[]> regions(String world) {
+        LongHashSet chunks = pending.get(world);
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        return ODRRegion.batches(chunks.toArray());
+    }
+
+    /**
+     * Removes the chunks of a batch that are still pending
+     */
+    private synchronized long[] take(String world, long[] region) {
+        LongHashSet chunks = pending.get(world);
+        if (chunks == null || !reading) {
+            return new long[0];
+        }
+        int count = 0;
+        long[] taken = new long[region.length];
+        for (long chunk : region) {
+            if (chunks.remove(chunk)) {
+                taken[count++] = chunk;
+            }
+        }
+        return Arrays.copyOf(taken, count);
+    }
+}
@@ -1,17 +1,33 @@
 package com.drtshock.obsidiandestroyer.managers;
 
 import com.drtshock.obsidiandestroyer.datatypes.DurabilityMaterial;
+import com.drtshock.obsidiandestroyer.datatypes.ExplosionSource;
+import org.bukkit.Material;
 import org.bukkit.entity.Creeper;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class MaterialManager {
 
     private static MaterialManager instance;
     private Map<String, DurabilityMaterial> durabilityMaterials = new HashMap<String, DurabilityMaterial>();
+    // compiled from durabilityMaterials, indexed by material ordinal
+    private DurabilityMaterial[] materials = new DurabilityMaterial[0];
+    private BitSet handled = new BitSet();
+    private BitSet enabled = new BitSet();
+    private BitSet destructible = new BitSet();
+    // explosion sources, and the damage of every source to every material: [ordinal * sources + source]
+    private List<ExplosionSource> sources;
+    private int[] damageMatrix = new int[0];
+    private int[] sourceByEntityType = new int[0];
+    private int[] chargedSourceByEntityType = new int[0];
+    private int cannonSource = -1;
 
     /**
      * Stores materials that have durability enabled to track
@@ -34,8 +50,127 @@ public class MaterialManager {
      * Loads the durability materials to track
      */
     public void load() {
-        durabilityMaterials.clear();
-        durabilityMaterials = ConfigManager.getInstance().getDurabilityMaterials();
+        List<ExplosionSource> loadedSources = ConfigManager.getInstance().getExplosionSources();
+        Map<String, DurabilityMaterial> loaded = ConfigManager.getInstance().getDurabilityMaterials(loadedSources);
+        DurabilityMaterial[] table = new DurabilityMaterial[Material.values().length];
+        BitSet handledSet = new BitSet(table.length);
+        BitSet enabledSet = new BitSet(table.length);
+        BitSet destructibleSet = new BitSet(table.length);
+        // materials that are not handled are destructible
+        destructibleSet.set(0, table.length);
+        for (DurabilityMaterial material : loaded.values()) {
+            final int ordinal = material.getType().ordinal();
+            table[ordinal] = material;
+            handledSet.set(ordinal);
+            enabledSet.set(ordinal, material.getEnabled());
+            destructibleSet.set(ordinal, material.isDestructible());
+        }
+
+        final int sourceCount = loadedSources.size();
+        int[] matrix = new int[table.length * sourceCount];
+        Arrays.fill(matrix, DurabilityMaterial.DISABLED);
+        for (DurabilityMaterial material : loaded.values()) {
+            final int row = material.getType().ordinal() * sourceCount;
+            for (int source = 0; source < sourceCount; source++) {
+                matrix[row + source] = material.getSourceDamage(source);
+            }
+        }
+        int[] bySource = new int[EntityType.values().length];
+        int[] byChargedSource = new int[bySource.length];
+        Arrays.fill(bySource, -1);
+        Arrays.fill(byChargedSource, -1);
+        int cannons = -1;
+        for (int source = 0; source < sourceCount; source++) {
+            ExplosionSource explosionSource = loadedSources.get(source);
+            int[] byType = explosionSource.isCharged() ? byChargedSource : bySource;
+            for (EntityType type : explosionSource.getEntityTypes()) {
+                // the first source listing a type wins
+                if (byType[type.ordinal()] < 0) {
+                    byType[type.ordinal()] = source;
+                }
+            }
+            if (cannons < 0 && explosionSource.getName().equalsIgnoreCase("Cannons")) {
+                cannons = source;
+            }
+        }
+
+        durabilityMaterials = loaded;
+        materials = table;
+        handled = handledSet;
+        enabled = enabledSet;
+        destructible = destructibleSet;
+        sources = loadedSources;
+        damageMatrix = matrix;
+        sourceByEntityType = bySource;
+        chargedSourceByEntityType = byChargedSource;
+        cannonSource = cannons;
+    }
+
+    /**
+     * Gets the explosion sources, in the order of their indexes
+     *
+     * @return the explosion sources
+     */
+    public List<ExplosionSource> getExplosionSources() {
+        return sources;
+    }
+
+    /**
+     * Gets the explosion source an entity explodes as. Charged creepers explode as a charged
+     * source when one is configured.
+     *
+     * @param entity the exploding entity
+     * @return the index of the source, or -1 if no source handles the entity
+     */
+    public int getSource(Entity entity) {
+        if (entity == null) {
+            return -1;
+        }
+        final int ordinal = entity.getType().ordinal();
+        if (ordinal >= sourceByEntityType.length) {
+            return -1;
+        }
+        if (entity instanceof Creeper && ((Creeper) entity).isPowered() && chargedSourceByEntityType[ordinal] >= 0) {
+            return chargedSourceByEntityType[ordinal];
+        }
+        return sourceByEntityType[ordinal];
+    }
+
+    /**
+     * Gets the explosion source of cannon projectiles
+     *
+     * @return the index of the source, or -1 if no cannon source is configured
+     */
+    public int getCannonSource() {
+        return cannonSource;
+    }
+
+    /**
+     * Returns the amount of damage an explosion source does to a material
+     *
+     * @param material the material
+     * @param source   the index of the source, see {@link #getSource(Entity)}
+     * @return amount of damage done, or {@link DurabilityMaterial#DISABLED} if the source is not
+     * enabled for the material
+     */
+    public int getDamage(Material material, int source) {
+        if (source < 0) {
+            // unknown sources do a single point of damage to handled materials
+            return contains(material) ? 1 : DurabilityMaterial.DISABLED;
+        }
+        final int index = material.ordinal() * sources.size() + source;
+        return index < damageMatrix.length ? damageMatrix[index] : DurabilityMaterial.DISABLED;
+    }
+
+    /**
+     * Gets the durability data of a material
+     *
+     * @param material the material
+     * @return the durability data, or null if the material is not handled
+     */
+    public DurabilityMaterial get(Material material) {
+        final int ordinal = material.ordinal();
+        return ordinal < materials.length ? materials[ordinal] : null;
     }
 
     /**
@@ -48,13 +183,34 @@ public class MaterialManager {
         return durabilityMaterials.containsKey(material);
     }
 
+    /**
+     * Checks if the managed blocks contains a material
+     *
+     * @param material to compare against
+     * @return true if the material is a managed block
+     */
+    public boolean contains(Material material) {
+        return handled.get(material.ordinal());
+    }
+
     /**
      * Returns whether durability for block is enabled.
      *
      * @return whether durability for block is enabled
      */
     public boolean getDurabilityEnabled(String material) {
-        return durabilityMaterials.containsKey(material) && durabilityMaterials.get(material).getEnabled();
+        DurabilityMaterial durabilityMaterial = durabilityMaterials.get(material);
+        return durabilityMaterial != null && durabilityMaterial.getEnabled();
+    }
+
+    /**
+     * Returns whether durability for a material is enabled.
+     *
+     * @param material the material
+     * @return whether durability for the material is enabled
+     */
+    public boolean getDurabilityEnabled(Material material) {
+        return enabled.get(material.ordinal());
     }
 
     /**
@@ -63,10 +219,19 @@ public class MaterialManager {
      * @return the max durability
      */
     public int getDurability(String material) {
-        if (durabilityMaterials.containsKey(material)) {
-            return durabilityMaterials.get(material).getDurability();
-        }
-        return 0;
+        DurabilityMaterial durabilityMaterial = durabilityMaterials.get(material);
+        return durabilityMaterial != null ? durabilityMaterial.getDurability() : 0;
+    }
+
+    /**
+     * Returns the max durability of a material.
+     *
+     * @param material the material
+     * @return the max durability
+     */
+    public int getDurability(Material material) {
+        DurabilityMaterial durabilityMaterial = get(material);
+        return durabilityMaterial != null ? durabilityMaterial.getDurability() : 0;
     }
 
     /**
@@ -78,6 +243,17 @@ public class MaterialManager {
         return durabilityMaterials.containsKey(material) && durabilityMaterials.get(material).getResetEnabled();
     }
 
+    /**
+     * Returns whether durability timer for a material is enabled.
+     *
+     * @param material the material
+     * @return whether durability timer for the material is enabled
+     */
+    public boolean getDurabilityResetTimerEnabled(Material material) {
+        DurabilityMaterial durabilityMaterial = get(material);
+        return durabilityMaterial != null && durabilityMaterial.getResetEnabled();
+    }
+
     /**
      * Returns the time in milliseconds after which the durability gets reset.
      *
@@ -90,6 +266,17 @@ public class MaterialManager {
         return 100000L;
     }
 
+    /**
+     * Returns the time in milliseconds after which the durability of a material gets reset.
+     *
+     * @param material the material
+     * @return the time in milliseconds after which the durability gets reset
+     */
+    public long getDurabilityResetTime(Material material) {
+        DurabilityMaterial durabilityMaterial = get(material);
+        return durabilityMaterial != null ? durabilityMaterial.getResetTime() : 100000L;
+    }
+
     /**
      * Returns the chance to drop an item from a blown up block.
      *
@@ -102,6 +289,17 @@ public class MaterialManager {
         return 0.6D;
     }
 
+    /**
+     * Returns the chance to drop an item from a blown up block of a material.
+     *
+     * @param material the material
+     * @return the chance to drop an item from a blown up block
+     */
+    public double getChanceToDropBlock(Material material) {
+        DurabilityMaterial durabilityMaterial = get(material);
+        return durabilityMaterial != null ? durabilityMaterial.getChanceTopDrop() : 0.6D;
+    }
+
     /**
      * Returns if Fireball damage is enabled for block
      *
@@ -175,40 +373,6 @@ public class MaterialManager {
         return 0;
     }
 
-    /**
-     * Returns the amount of damage done to the material by an entity
-     *
-     * @param entity   the entity that is involved in damaging
-     * @param material the name of the material to lookup
-     * @return amount of damage done
-     */
-    public int getDamageTypeAmount(Entity entity, String material) {
-        if (durabilityMaterials.containsKey(material)) {
-            EntityType eventTypeRep = entity.getType();
-            switch (eventTypeRep) {
-                case PRIMED_TNT:
-                    return durabilityMaterials.get(material).getTntDamage();
-                case SNOWBALL:
-                    return 0;
-                case CREEPER:
-                    Creeper creeper = (Creeper) entity;
-                    return creeper.isPowered() ? durabilityMaterials.get(material).getChargedCreeperDamage() : durabilityMaterials.get(material).getCreepersDamage();
-                case WITHER:
-                case WITHER_SKULL:
-                    return durabilityMaterials.get(material).getWithersDamage();
-                case MINECART_TNT:
-                    return durabilityMaterials.get(material).getTntMinecartsDamage();
-                case FIREBALL:
-                case SMALL_FIREBALL:
-                case GHAST:
-                    return durabilityMaterials.get(material).getGhastsDamage();
-                default:
-                    break;
-            }
-        }
-        return 1;
-    }
-
     /**
      * Returns the amount of damage done to the material by a cannon projectile
      *
@@ -236,4 +400,8 @@ public class MaterialManager {
         return true;
     }
 
+    public boolean isDestructible(Material material) {
+        return destructible.get(material.ordinal());
+    }
+
 }
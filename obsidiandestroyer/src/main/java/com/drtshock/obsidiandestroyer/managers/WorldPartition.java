@@ -0,0 +1,821 @@
+package com.drtshock.obsidiandestroyer.managers;
+
+import com.drtshock.obsidiandestroyer.ObsidianDestroyer;
+import com.drtshock.obsidiandestroyer.datatypes.LongHashSet;
+import com.drtshock.obsidiandestroyer.datatypes.LongObjectMap;
+import com.drtshock.obsidiandestroyer.datatypes.TimingWheel;
+import com.drtshock.obsidiandestroyer.datatypes.io.DurabilityStore;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRArchive;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRFile;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRJournal;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRManifest;
+import com.drtshock.obsidiandestroyer.datatypes.io.ODRRegion;
+import com.drtshock.obsidiandestroyer.datatypes.io.RegionDurabilityStore;
+import com.drtshock.obsidiandestroyer.datatypes.io.SQLiteDurabilityStore;
+import com.drtshock.obsidiandestroyer.enumerations.StoreType;
+import com.drtshock.obsidiandestroyer.util.Util;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Durabilities of a single world. Every partition has its own directory, store, I/O executor,
+ * journal, manifest, durability timers and loaded chunks, so a world is loaded, unloaded or reset
+ * without touching the others. Partitions only exist for the loaded worlds the plugin is enabled in.
+ */
+public class WorldPartition {
+
+    private final String world;
+    private final int id;
+    // resolved on first use, main thread only; the partition is closed when the world unloads
+    private World bukkitWorld;
+    private final File directory;
+    private final DurabilityStore store;
+    private final ExecutorService ioExecutor;
+    private ODRJournal journal;
+    private ScheduledExecutorService journalExecutor;
+    private ScheduledFuture<?> journalTask;
+    // wrappers by packed chunk coordinates; main thread only
+    private final LongObjectMap<ChunkWrapper> chunks = new LongObjectMap<ChunkWrapper>();
+    // last wrapper looked up, explosions resolve the same few chunks over and over
+    private long lastChunk;
+    private ChunkWrapper lastWrapper;
+    // durability timers of the loaded chunks, one second per slot
+    private final TimingWheel expiries = new TimingWheel(1024, 1000L, System.currentTimeMillis());
+    // chunks with stored durabilities; main thread only
+    private ODRManifest manifest;
+    private final AtomicLong writesQueued = new AtomicLong();
+    private final AtomicLong writesAvoided = new AtomicLong();
+    // sequence of the journal segment sealed by the running autosave cycle; main thread only
+    private Future<Integer> sealed;
+    // writes that failed since the partition was opened, and the amount of them the last journal
+    // release saw; the latter is only touched on the I/O thread
+    private final AtomicInteger failedWrites = new AtomicInteger();
+    private int releasedFailures = 0;
+    // wrappers whose write failed, marked dirty again on the main thread
+    private final Queue<ChunkWrapper> failed = new ConcurrentLinkedQueue<ChunkWrapper>();
+    // set once a failed write can not be retried, the journal is then kept until the next start
+    private volatile boolean keepJournal = false;
+
+    /**
+     * Opens the partition of a world. Changes that were not written into the store before the last
+     * shutdown are applied first.
+     *
+     * @param world           the world name
+     * @param id              the interned id of the world, see {@link ChunkManager#getWorldId(World)}
+     * @param directory       the directory of the world
+     * @param type            the store type
+     * @param journalExecutor the executor committing the journal, or null if the journal is disabled
+     */
+    WorldPartition(String world, int id, File directory, StoreType type, ScheduledExecutorService journalExecutor) {
+        this.world = world;
+        this.id = id;
+        this.directory = directory;
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        this.ioExecutor = Executors.newSingleThreadExecutor(Util.threadFactory("ObsidianDestroyer I/O " + world));
+        this.store = openStore(directory, type, world);
+        boolean changed = replayJournal(directory, store);
+        changed |= applyEmergencyFiles(directory, store);
+        loadManifest(changed);
+        if (journalExecutor != null) {
+            openJournal(journalExecutor);
+        }
+    }
+
+    /**
+     * Opens the durability store of a type, falling back to region files if it can not be opened
+     *
+     * @param directory the directory of the store
+     * @param type      the store type
+     * @param world     the world of the directory, or null if it holds the chunks of every world
+     * @return the store
+     */
+    static DurabilityStore openStore(File directory, StoreType type, String world) {
+        if (type == StoreType.SQLITE) {
+            try {
+                return new SQLiteDurabilityStore(directory);
+            } catch (IOException e) {
+                ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed opening the SQLite durability store, using region files instead!");
+                e.printStackTrace();
+            }
+        }
+        return world != null ? new RegionDurabilityStore(directory, 64, world) : new RegionDurabilityStore(directory, 64);
+    }
+
+    /**
+     * Applies the changes logged before an unclean shutdown to a durability store
+     *
+     * @param directory the directory holding the journal
+     * @param store     the store
+     * @return true if the journal was replayed
+     */
+    static boolean replayJournal(File directory, DurabilityStore store) {
+        if (ODRJournal.segments(directory).isEmpty()) {
+            return false;
+        }
+        final long time = System.currentTimeMillis();
+        ObsidianDestroyer.LOG.log(Level.INFO, "Replaying durability journal in {0}...", directory.getName());
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), Util.threadFactory("ObsidianDestroyer Replay"));
+        try {
+            int changes = ODRJournal.replay(directory, store, executor);
+            ObsidianDestroyer.LOG.log(Level.INFO, "Replayed {0} durability changes in {1} ms.", new Object[]{changes, System.currentTimeMillis() - time});
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed replaying the durability journal in {0}!", directory.getName());
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * Applies the chunks that were not written before the shutdown deadline to a durability store
+     *
+     * @param directory the directory holding the emergency files
+     * @param store     the store
+     * @return true if emergency files were applied
+     */
+    static boolean applyEmergencyFiles(File directory, DurabilityStore store) {
+        if (ODRArchive.emergencyFiles(directory).isEmpty()) {
+            return false;
+        }
+        final long time = System.currentTimeMillis();
+        ObsidianDestroyer.LOG.log(Level.INFO, "Applying emergency durability files in {0}...", directory.getName());
+        try {
+            int applied = ODRArchive.applyEmergencyFiles(directory, store);
+            ObsidianDestroyer.LOG.log(Level.INFO, "Applied durabilities of {0} chunks in {1} ms.", new Object[]{applied, System.currentTimeMillis() - time});
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed applying the emergency durability files in {0}!", directory.getName());
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * Loads the manifest of the chunks with stored durabilities. The manifest is written on a clean
+     * shutdown; after a crash, when the store changed outside of the chunk manager or when a
+     * different store type is used, it is rebuilt from the store.
+     *
+     * @param changed true if the store changed since the manifest was written
+     */
+    private void loadManifest(boolean changed) {
+        File marker = new File(directory, ODRManifest.DIRTY_MARKER);
+        final String type = store instanceof SQLiteDurabilityStore ? StoreType.SQLITE.name() : StoreType.REGION.name();
+        if (!changed && !marker.exists() && type.equals(ODRManifest.readStoreType(directory))) {
+            try {
+                manifest = ODRManifest.read(directory, world, store instanceof RegionDurabilityStore);
+            } catch (IOException e) {
+                ObsidianDestroyer.LOG.log(Level.WARNING, "Failed reading the durability manifest of {0}!", world);
+                e.printStackTrace();
+            }
+        }
+        if (manifest == null) {
+            final long time = System.currentTimeMillis();
+            try {
+                Map<String, ODRManifest> rebuilt = ODRManifest.rebuild(store);
+                manifest = rebuilt.get(world);
+            } catch (IOException e) {
+                ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed rebuilding the durability manifest of {0}!", world);
+                e.printStackTrace();
+            }
+            if (manifest == null) {
+                manifest = new ODRManifest(world);
+            }
+            writeManifest(manifest.copy());
+            ObsidianDestroyer.LOG.log(Level.INFO, "Rebuilt durability manifest of {0} in {1} ms.", new Object[]{world, System.currentTimeMillis() - time});
+            ODRManifest.writeStoreType(directory, type);
+        }
+        try {
+            // removed again on a clean shutdown
+            marker.createNewFile();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Opens the journal and commits it in the background
+     */
+    private void openJournal(ScheduledExecutorService executor) {
+        try {
+            journal = new ODRJournal(directory);
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.SEVERE, "Failed opening the durability journal of {0}! Changes are only saved with their chunks.", world);
+            e.printStackTrace();
+            return;
+        }
+        final long commitInterval = ConfigManager.getInstance().getJournalCommitInterval();
+        final ODRJournal log = journal;
+        journalExecutor = executor;
+        journalTask = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    log.commit();
+                } catch (RuntimeException e) {
+                    // an exception escaping the task would stop the group commit
+                    keepJournal = true;
+                    e.printStackTrace();
+                }
+            }
+        }, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets the world name
+     *
+     * @return the world name
+     */
+    public String getWorldName() {
+        return world;
+    }
+
+    /**
+     * Gets the world. Must be called on the main thread.
+     *
+     * @return the world, or null if it is not loaded
+     */
+    public World getWorld() {
+        if (bukkitWorld == null) {
+            bukkitWorld = ObsidianDestroyer.getInstance().getServer().getWorld(world);
+        }
+        return bukkitWorld;
+    }
+
+    /**
+     * Gets the interned id of the world
+     *
+     * @return the world id
+     */
+    public int getWorldId() {
+        return id;
+    }
+
+    /**
+     * Gets the directory of the world
+     *
+     * @return the directory
+     */
+    File getDirectory() {
+        return directory;
+    }
+
+    DurabilityStore getStore() {
+        return store;
+    }
+
+    ExecutorService getIOExecutor() {
+        return ioExecutor;
+    }
+
+    TimingWheel getExpiries() {
+        return expiries;
+    }
+
+    /**
+     * Creates a wrapper of a chunk of the world
+     *
+     * @param chunk the chunk
+     * @return the wrapper, not added to the partition yet
+     */
+    ChunkWrapper newWrapper(Chunk chunk) {
+        return new ChunkWrapper(chunk, store, journal, expiries);
+    }
+
+    /**
+     * Checks if a chunk has stored durabilities
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the chunk has stored durabilities
+     */
+    boolean isStored(int chunkX, int chunkZ) {
+        return manifest.contains(chunkX, chunkZ);
+    }
+
+    /**
+     * Checks if a chunk has a wrapper, without allocating anything
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return true if the chunk has a wrapper
+     */
+    boolean isWrapped(int chunkX, int chunkZ) {
+        return getWrapper(chunkX, chunkZ) != null;
+    }
+
+    /**
+     * Gets the wrapper of a chunk, without waiting for a pending load of it
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     * @return the wrapper or null
+     */
+    ChunkWrapper getWrapper(int chunkX, int chunkZ) {
+        final long key = LongHashSet.chunkKey(chunkX, chunkZ);
+        if (lastWrapper != null && lastChunk == key) {
+            return lastWrapper;
+        }
+        ChunkWrapper wrapper = chunks.get(key);
+        if (wrapper != null) {
+            lastChunk = key;
+            lastWrapper = wrapper;
+        }
+        return wrapper;
+    }
+
+    ChunkWrapper putWrapper(ChunkWrapper wrapper) {
+        lastWrapper = null;
+        return chunks.put(LongHashSet.chunkKey(wrapper.getChunkX(), wrapper.getChunkZ()), wrapper);
+    }
+
+    ChunkWrapper removeWrapper(int chunkX, int chunkZ) {
+        lastWrapper = null;
+        return chunks.remove(LongHashSet.chunkKey(chunkX, chunkZ));
+    }
+
+    Collection<ChunkWrapper> getWrappers() {
+        return chunks.values();
+    }
+
+    /**
+     * Drops every wrapper and durability timer
+     */
+    void clearWrappers() {
+        chunks.clear();
+        lastWrapper = null;
+        expiries.clear();
+    }
+
+    /**
+     * Queues the write of a wrapper if it changed and keeps track of whether it has stored data
+     *
+     * @param wrapper the wrapper to save
+     * @param clear   set to true to clear the wrapper after the copy is taken
+     */
+    void queueSave(ChunkWrapper wrapper, boolean clear) {
+        countWrite(wrapper.saveAsync(ioExecutor, clear, this));
+        updateManifest(wrapper);
+    }
+
+    void updateManifest(ChunkWrapper wrapper) {
+        if (wrapper.isStored()) {
+            manifest.put(wrapper.getChunkX(), wrapper.getChunkZ(), wrapper.getStoredRecords(), wrapper.getStoredMaxExpiry());
+        } else {
+            manifest.remove(wrapper.getChunkX(), wrapper.getChunkZ());
+        }
+    }
+
+    /**
+     * Reports a failed write of a wrapper. Runs on the I/O executor.
+     *
+     * @param wrapper the wrapper that was not written
+     */
+    void writeFailed(ChunkWrapper wrapper) {
+        failedWrites.incrementAndGet();
+        failed.add(wrapper);
+    }
+
+    /**
+     * Marks the wrappers whose write failed as dirty again, so the next save retries them.
+     * Wrappers that were unloaded since are dropped; their changes stay in the journal, which is
+     * then replayed on the next start.
+     */
+    void retryFailedWrites() {
+        ChunkWrapper wrapper;
+        while ((wrapper = failed.poll()) != null) {
+            if (getWrapper(wrapper.getChunkX(), wrapper.getChunkZ()) == wrapper) {
+                wrapper.markDirty();
+            } else {
+                keepJournal = true;
+            }
+        }
+    }
+
+    void countWrite(boolean written) {
+        if (written) {
+            writesQueued.incrementAndGet();
+        } else {
+            writesAvoided.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the chunks with stored durabilities, as of the writes queued so far
+     *
+     * @return packed chunk coordinates
+     */
+    long[] getStoredChunks() {
+        return manifest.getChunks();
+    }
+
+    ODRManifest copyManifest() {
+        return manifest.copy();
+    }
+
+    void writeManifest(ODRManifest copy) {
+        try {
+            copy.write(directory);
+        } catch (IOException e) {
+            ObsidianDestroyer.LOG.log(Level.WARNING, "Failed writing the durability manifest of {0}", world);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Seals the journal at the start of an autosave cycle. The segment files are rotated on the
+     * journal executor.
+     */
+    void sealJournal() {
+        sealed = journal != null ? journal.rotate(journalExecutor) : null;
+    }
+
+    /**
+     * Removes the journal segments sealed at the start of the autosave cycle, once the writes
+     * queued by the cycle are done. The segments are kept if any write failed since the last
+     * release, the chunk data may then miss changes that only the journal has.
+     */
+    void releaseJournal() {
+        final Future<Integer> rotation = sealed;
+        sealed = null;
+        if (journal == null || rotation == null) {
+            return;
+        }
+        final int segments;
+        try {
+            // rotated long ago, the cycle started at least a tick before
+            segments = rotation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return;
+        }
+        if (segments >= 0) {
+            // queued behind the writes of the cycle, so the sealed segments are no longer needed once it runs
+            ioExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (keepJournal) {
+                        return;
+                    }
+                    if (journal.hasFailed()) {
+                        ObsidianDestroyer.LOG.log(Level.WARNING, "Keeping the durability journal of {0} until the next start, a commit failed", world);
+                        keepJournal = true;
+                        return;
+                    }
+                    final int failures = failedWrites.get();
+                    if (failures != releasedFailures) {
+                        ObsidianDestroyer.LOG.log(Level.WARNING, "Keeping the durability journal of {0}, {1} chunk writes failed", new Object[]{world, failures - releasedFailures});
+                        releasedFailures = failures;
+                        return;
+                    }
+                    try {
+                        // the region writes of the cycle are not forced on their own
+                        store.sync();
+                    } catch (IOException e) {
+                        ObsidianDestroyer.LOG.log(Level.WARNING, "Keeping the durability journal of {0}, the chunk data could not be synced", world);
+                        e.printStackTrace();
+                        return;
+                    }
+                    journal.release(segments);
+                }
+            });
+        }
+    }
+
+    /**
+     * Resets the durabilities of the world within the area of a reset. The loaded chunks are
+     * cleared at once; the stored chunks that are not loaded are removed, or rewritten without the
+     * blocks in the area, on the I/O executor in batches of one region. Batches are queued behind
+     * pending saves, so these can not bring removed data back, and chunk loads queued after them
+     * see the result. The removals are logged to the journal, so a replay does not either.
+     *
+     * @param reset the reset
+     */
+    void reset(final DurabilityReset reset) {
+        long removed = 0L;
+        for (ChunkWrapper chunk : chunks.values()) {
+            if (!reset.intersects(chunk.getChunkX(), chunk.getChunkZ())) {
+                continue;
+            }
+            chunk.awaitLoad();
+            if (reset.covers(chunk.getChunkX(), chunk.getChunkZ())) {
+                removed += chunk.size();
+                chunk.removeKeys();
+                continue;
+            }
+            for (int representation : chunk.copyKeys().keys()) {
+                if (reset.contains(ChunkWrapper.toX(chunk.getChunkX(), representation), ChunkWrapper.toZ(chunk.getChunkZ(), representation))) {
+                    chunk.removeKey(representation);
+                    removed++;
+                }
+            }
+        }
+        // loaded chunks are written by their next save
+        LongHashSet stored = new LongHashSet();
+        for (long chunk : manifest.getChunks()) {
+            final int chunkX = LongHashSet.chunkX(chunk);
+            final int chunkZ = LongHashSet.chunkZ(chunk);
+            if (chunks.containsKey(chunk) || !reset.intersects(chunkX, chunkZ)) {
+                continue;
+            }
+            stored.add(chunk);
+            if (reset.covers(chunkX, chunkZ)) {
+                removed += manifest.getRecords(chunkX, chunkZ);
+                manifest.remove(chunkX, chunkZ);
+            }
+        }
+        reset.removed(removed);
+        for (final long[] batch : ODRRegion.batches(stored.toArray())) {
+            reset.addBatch(batch.length);
+            ioExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final LongObjectMap<long[]> rewritten;
+                    try {
+                        rewritten = resetBatch(reset, batch);
+                    } catch (IOException e) {
+                        ObsidianDestroyer.LOG.log(Level.WARNING, "Failed to reset durabilities of world {0}", world);
+                        e.printStackTrace();
+                        reset.batchDone(batch.length, true);
+                        return;
+                    }
+                    reset.batchDone(batch.length, false);
+                    if (!rewritten.isEmpty() && ObsidianDestroyer.getInstance().isEnabled()) {
+                        ObsidianDestroyer.getInstance().getServer().getScheduler().runTask(ObsidianDestroyer.getInstance(), new Runnable() {
+                            @Override
+                            public void run() {
+                                updateManifest(rewritten);
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes or rewrites the stored chunks of a batch. Runs on the I/O executor.
+     *
+     * @param reset the reset
+     * @param batch the chunks of one region
+     * @return the record count and max expiry of every rewritten chunk
+     * @throws IOException thrown if the store fails
+     */
+    private LongObjectMap<long[]> resetBatch(DurabilityReset reset, long[] batch) throws IOException {
+        final ODRJournal log = journal;
+        LongHashSet full = new LongHashSet();
+        LongHashSet partial = new LongHashSet();
+        for (long chunk : batch) {
+            if (reset.covers(LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk))) {
+                full.add(chunk);
+                if (log != null) {
+                    log.logClear(world, LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+                }
+            } else {
+                partial.add(chunk);
+            }
+        }
+        store.deleteAll(world, full.toArray());
+        LongObjectMap<long[]> rewritten = new LongObjectMap<long[]>();
+        if (partial.isEmpty()) {
+            return rewritten;
+        }
+        LongObjectMap<byte[]> data = store.getAll(world, partial.toArray());
+        LongObjectMap<byte[]> result = new LongObjectMap<byte[]>(data.size());
+        ODRFile reader = new ODRFile();
+        long removed = 0L;
+        for (long chunk : data.keys()) {
+            final int chunkX = LongHashSet.chunkX(chunk);
+            final int chunkZ = LongHashSet.chunkZ(chunk);
+            final List<long[]> kept = new ArrayList<long[]>();
+            reader.prepare(data.get(chunk));
+            final int records = reader.read(new ODRFile.RecordVisitor() {
+                @Override
+                public void visit(int x, int y, int z, int duraAmount, long duraTime) {
+                    kept.add(new long[]{x, y, z, duraAmount, duraTime});
+                }
+            });
+            reader.close();
+            long maxExpiry = 0L;
+            ODRFile writer = new ODRFile();
+            writer.prepare(chunkX, chunkZ);
+            for (Iterator<long[]> iterator = kept.iterator(); iterator.hasNext(); ) {
+                long[] record = iterator.next();
+                if (reset.contains((int) record[0], (int) record[2])) {
+                    iterator.remove();
+                    if (log != null) {
+                        log.logRemove(world, (int) record[0], (int) record[1], (int) record[2]);
+                    }
+                } else {
+                    writer.write((int) record[0], (int) record[1], (int) record[2], (int) record[3], record[4]);
+                    maxExpiry = Math.max(maxExpiry, record[4]);
+                }
+            }
+            if (kept.size() == records) {
+                continue;
+            }
+            removed += records - kept.size();
+            result.put(chunk, kept.isEmpty() ? new byte[0] : writer.toByteArray());
+            rewritten.put(chunk, new long[]{kept.size(), maxExpiry});
+        }
+        store.putAll(world, result);
+        reset.removed(removed);
+        return rewritten;
+    }
+
+    /**
+     * Updates the manifest after chunks were rewritten, unless they are loaded again since
+     */
+    private void updateManifest(LongObjectMap<long[]> rewritten) {
+        for (long chunk : rewritten.keys()) {
+            if (chunks.containsKey(chunk)) {
+                continue;
+            }
+            final long[] entry = rewritten.get(chunk);
+            if (entry[0] == 0L) {
+                manifest.remove(LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk));
+            } else {
+                manifest.put(LongHashSet.chunkX(chunk), LongHashSet.chunkZ(chunk), (int) entry[0], entry[1]);
+            }
+        }
+    }
+
+    /**
+     * Releases the store handles and writes the manifest, once every queued write is done
+     */
+    void release() {
+        final ODRManifest copy = manifest.copy();
+        runOnIOThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                store.close();
+                writeManifest(copy);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Saves every loaded chunk and closes the partition in the background. The I/O executor is
+     * shut down once the writes are done; a partition opened for the same world has to wait for
+     * it, see {@link #awaitClose(long)}.
+     */
+    void close() {
+        for (ChunkWrapper w : chunks.values()) {
+            if (w.isLoading()) {
+                // never read, so there is nothing new to write
+                w.cancelLoad();
+            } else {
+                w.awaitLoad();
+                queueSave(w, true);
+            }
+        }
+        clearWrappers();
+        final ODRManifest copy = manifest.copy();
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeManifest(copy);
+                shutdown(true);
+            }
+        });
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Waits for a closed partition to finish its writes
+     *
+     * @param deadline the deadline in nanoseconds, see {@link System#nanoTime()}
+     * @return true if the partition is closed
+     */
+    boolean awaitClose(long deadline) {
+        try {
+            return ioExecutor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the store and the journal. Must not be called while writes are running.
+     *
+     * @param written true if every change is stored in the chunk data
+     */
+    void shutdown(boolean written) {
+        // a failed write may have lost changes that only the journal still has
+        written &= failedWrites.get() == 0;
+        store.close();
+        if (written) {
+            // the manifest written before matches the store
+            new File(directory, ODRManifest.DIRTY_MARKER).delete();
+        }
+        if (journal != null) {
+            journalTask.cancel(false);
+            // keep the journal for replay if the chunk data may be incomplete
+            journal.close(written);
+            journal = null;
+        }
+    }
+
+    /**
+     * Runs a task on the I/O executor and waits for its result. Tasks run in submission order,
+     * so every write queued before the task has completed once this returns.
+     *
+     * @param task the task to run
+     * @return the result of the task, or null if it failed
+     */
+    <T> T runOnIOThread(Callable<T> task) {
+        try {
+            return ioExecutor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the amount of chunks currently wrapped
+     *
+     * @return amount of loaded chunk wrappers
+     */
+    public int getLoadedChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets the amount of blocks tracked in the loaded chunks
+     *
+     * @return amount of tracked blocks
+     */
+    public int getTrackedBlockCount() {
+        int count = 0;
+        for (ChunkWrapper wrapper : chunks.values()) {
+            count += wrapper.size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the amount of chunks with stored durabilities
+     *
+     * @return amount of stored chunks
+     */
+    public int getStoredChunkCount() {
+        return manifest.getChunkCount();
+    }
+
+    /**
+     * Gets the amount of stored durabilities, as of the last save of every chunk
+     *
+     * @return amount of stored blocks
+     */
+    public long getStoredBlockCount() {
+        return manifest.getRecordCount();
+    }
+
+    /**
+     * Gets the amount of chunk writes done since the partition was opened
+     *
+     * @return amount of chunk writes
+     */
+    public long getWritesQueued() {
+        return writesQueued.get();
+    }
+
+    /**
+     * Gets the amount of chunk writes skipped because the chunk was unchanged
+     *
+     * @return amount of avoided chunk writes
+     */
+    public long getWritesAvoided() {
+        return writesAvoided.get();
+    }
+}
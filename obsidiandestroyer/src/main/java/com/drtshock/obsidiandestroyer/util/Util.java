@@ -1,5 +1,6 @@
 package com.drtshock.obsidiandestroyer.util;
 
+import com.drtshock.obsidiandestroyer.datatypes.DurabilityMaterial;
 import com.drtshock.obsidiandestroyer.managers.ConfigManager;
 import com.drtshock.obsidiandestroyer.managers.HookManager;
 import com.drtshock.obsidiandestroyer.managers.MaterialManager;
@@ -14,6 +15,8 @@ import org.bukkit.util.BlockIterator;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Util {
 
@@ -193,6 +196,15 @@ public class Util {
         return true;
     }
 
+    public static int getMaxDistance(Material material, int defaultRadius) {
+        DurabilityMaterial durabilityMaterial = MaterialManager.getInstance().get(material);
+        int dist = durabilityMaterial != null ? durabilityMaterial.getRadius() : 0;
+        if (dist <= 0) {
+            dist = defaultRadius;
+        }
+        return dist;
+    }
+
     public static int getMaxDistance(String material, int defaultRadius) {
         int dist = MaterialManager.getInstance().getBlastRadius(material);
         if (dist <= 0) {
@@ -215,6 +227,15 @@ public class Util {
         return value > Math.round((du * multi) + (du * 0.18));
     }
 
+    public static boolean checkIfMax(int value, Material material, double multi) {
+        return value >= Math.round(MaterialManager.getInstance().getDurability(material) * multi);
+    }
+
+    public static boolean checkIfOverMax(int value, Material material, double multi) {
+        final int du = MaterialManager.getInstance().getDurability(material);
+        return value > Math.round((du * multi) + (du * 0.18));
+    }
+
     public static boolean isNearLiquid(Location location) {
         for (BlockFace face : BlockFace.values()) {
             switch (face) {
@@ -272,7 +293,7 @@ public class Util {
                 // check if the block material is being handled
                 if (useOnlyMaterialListing) {
                     // only handle for certain case as to not interfere with all explosions
-                    if (MaterialManager.getInstance().contains(block.getType().name())) {
+                    if (MaterialManager.getInstance().contains(block.getType())) {
                         return true;
                     } else {
                         continue;
@@ -332,7 +353,7 @@ public class Util {
                 // check if the block material is being handled
                 if (useOnlyMaterialListing) {
                     // only handle for certain case as to not interfere with all explosions
-                    if (MaterialManager.getInstance().contains(block.getType().name())) {
+                    if (MaterialManager.getInstance().contains(block.getType())) {
                         tagetsInPath.add(block.getLocation());
                         break;
                     } else {
@@ -380,6 +401,19 @@ public class Util {
         return value;
     }
 
+    public static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + " #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
     public static String header() {
         return ChatColor.DARK_AQUA + "[" + ChatColor.AQUA + "ObsidianDestroyer" + ChatColor.DARK_AQUA + "] " + ChatColor.RESET;
     }
@@ -414,32 +448,4 @@ public class Util {
                 return false;
         }
     }
-
-    public static boolean matchBlocksToLocations(List<Location> list1, List<Block> list2) {
-        for (Location location : list1) {
-            if (list2.contains(location.getBlock())) {
-                return true;
-            }
-        }
-        for (Block block : list2) {
-            if (list1.contains(block.getLocation())) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    public static boolean matchLocationsToLocations(List<Location> list1, List<Location> list2) {
-        for (Location location : list1) {
-            if (list2.contains(location)) {
-                return true;
-            }
-        }
-        for (Location location : list2) {
-            if (list1.contains(location)) {
-                return true;
-            }
-        }
-        return false;
-    }
 }